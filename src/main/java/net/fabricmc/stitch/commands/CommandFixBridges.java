@@ -11,10 +11,8 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
 import java.nio.file.StandardOpenOption;
-import java.util.ArrayDeque;
 import java.util.Arrays;
 import java.util.Collections;
-import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -40,16 +38,30 @@ import net.fabricmc.stitch.commands.CommandMergeTiny.TinyFile;
 import net.fabricmc.stitch.commands.CommandMergeTiny.TinyFile.MethodLine;
 import net.fabricmc.stitch.commands.CommandMergeTiny.TinyLine;
 import net.fabricmc.stitch.representation.Access;
+import net.fabricmc.stitch.representation.CallSiteIndex;
 import net.fabricmc.stitch.representation.ClassStorage;
+import net.fabricmc.stitch.representation.DescriptorIndex;
+import net.fabricmc.stitch.representation.DescriptorIndex.Descriptor;
 import net.fabricmc.stitch.representation.JarClassEntry;
 import net.fabricmc.stitch.representation.JarMethodEntry;
 import net.fabricmc.stitch.representation.JarReader.Builder;
 import net.fabricmc.stitch.representation.JarRootEntry;
-import net.fabricmc.stitch.representation.VirtualJarClassEntry;
+import net.fabricmc.stitch.representation.LayeredClassStorage;
+import net.fabricmc.stitch.representation.LibraryClassResolver;
+import net.fabricmc.stitch.representation.MemberIndex;
+import net.fabricmc.stitch.representation.SubtypeOracle;
 import net.fabricmc.stitch.util.StitchUtil;
 import net.fabricmc.stitch.util.StitchUtil.FileSystemDelegate;
 
 public class CommandFixBridges extends Command {
+	private static final LibraryClassResolver JDK_CLASSES = new LibraryClassResolver();
+	//Tack on additional library classes (ie Java ones) for the sake of inheritance
+	private static final ClassStorage LIBRARY_CLASSES = (name, create) -> {
+		if ("java/lang/Object".equals(name)) return null; //Don't try Object, things break
+
+		return JDK_CLASSES.getClass(name, create);
+	};
+
 	public CommandFixBridges() {
 		super("fixBridges");
 	}
@@ -71,13 +83,20 @@ public class CommandFixBridges extends Command {
 
 	public static void run(File jar, Path mappingsIn, Path mappingsOut, String jarNamespace, String... correctiveNamespaces) throws IOException {
 		JarRootEntry jarEntry = new JarRootEntry(jar);
-		Builder.create(jarEntry).joinMethodEntries(false).build().apply();
+		Builder.create(jarEntry).joinMethodEntries(false).indexCallSites(true).build().apply();
+		SubtypeOracle subtypes = new SubtypeOracle(jarEntry);
+		ClassStorage classes = new LayeredClassStorage(jarEntry, LIBRARY_CLASSES);
+		DescriptorIndex descriptors = jarEntry.getDescriptors();
 
 		System.out.println("Looking for bridges...");
 
+		//Only classes with a method which could be a bridge need a closer look
+		List<JarClassEntry> candidates = MemberIndex.owners(jarEntry.getMembers().methods().inPackage("net/minecraft/")
+				.withoutAccess(Opcodes.ACC_FINAL | Opcodes.ACC_PRIVATE | Opcodes.ACC_STATIC).list());
+
 		Map<EntryTriple, EntryTriple> bridges;
 		try (FileSystemDelegate fs = StitchUtil.getJarFileSystem(jar, false)) {
-			bridges = jarEntry.getAllClasses().parallelStream().filter(classEntry -> classEntry.getFullyQualifiedName().startsWith("net/minecraft/")).flatMap(classEntry -> {
+			bridges = candidates.parallelStream().flatMap(classEntry -> {
 				Set<Method> potentialBridges = StitchUtil.newIdentityHashSet();
 				Set<Method> potentiallyBridged = StitchUtil.newIdentityHashSet();
 
@@ -86,7 +105,7 @@ public class CommandFixBridges extends Command {
 
 					//All bridges must have a parent (and won't be made final by the compiler)
 					//Methods being bridged to shouldn't ever have parents (as they're narrowing a parent's method), but might from an unrelated interface
-					(!method.isFinal() && method.hasParent(jarEntry) ? potentialBridges : potentiallyBridged).add(method);
+					(!method.isFinal() && method.hasParent(classes) ? potentialBridges : potentiallyBridged).add(method);
 				}
 				assert potentiallyBridged.stream().allMatch(method -> !Access.isBridge(method.method.getAccess())):
 					potentiallyBridged.stream().filter(method -> Access.isBridge(method.method.getAccess())).map(method -> StitchUtil.memberString(method.asEntry()))
@@ -95,7 +114,7 @@ public class CommandFixBridges extends Command {
 				//No method looks like it is probably a bridge
 				if (potentialBridges.isEmpty()) return Stream.empty();
 
-				BridgeDetector detector = new BridgeDetector(jarEntry, potentialBridges.toArray(new Method[0])); {
+				BridgeDetector detector = new BridgeDetector(jarEntry, descriptors, subtypes, potentialBridges.toArray(new Method[0])); {
 					Path path = fs.get().getPath(classEntry.getKey() + ".class");
 					assert path != null: "Failed to make class file path for " + classEntry;
 					try (InputStream in = Files.newInputStream(path)) {
@@ -122,32 +141,15 @@ public class CommandFixBridges extends Command {
 			}).collect(Collectors.toConcurrentMap(Entry::getKey, Entry::getValue));
 
 			if (!bridges.isEmpty()) {
-				Set<EntryTriple> bridgeMethods = new HashSet<>(bridges.keySet());
-				System.out.println("Verifying " + bridgeMethods.size() + " found bridges");
+				System.out.println("Verifying " + bridges.size() + " found bridges");
 
-				jarEntry.getAllClasses().parallelStream().forEach(classEntry -> {
-					Path path = fs.get().getPath(classEntry.getKey() + ".class");
-					assert path != null: "Failed to make class file path for " + classEntry;
-
-					assert Files.exists(path): "Broken class name: " + classEntry.getKey(); //Couldn't find class, most likely from an inner class not remapping its outer properly
-					try (InputStream in = Files.newInputStream(path)) {
-						new ClassReader(in).accept(new ClassVisitor(Opcodes.ASM7) {
-							@Override
-							public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
-								return new MethodVisitor(Opcodes.ASM7) {
-									@Override
-									public void visitMethodInsn(int opcode, String owner, String name, String descriptor, boolean isInterface) {
-										if (bridgeMethods.contains(new EntryTriple(owner, name, descriptor))) {//That's not good
-											System.err.println("Direct reference to suspected bridge method: " + owner + '/' + name + descriptor);
-										}
-									}
-								};
-							}
-						}, ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
-					} catch (IOException e) {
-						throw new UncheckedIOException("Unable to read class file for " + classEntry + " from " + path, e);
+				CallSiteIndex callSites = jarEntry.getCallSites();
+				for (EntryTriple bridge : bridges.keySet()) {
+					for (CallSiteIndex.MethodRef caller : callSites.getCallers(bridge.getOwner(), bridge.getName(), bridge.getDesc())) {//That's not good
+						System.err.println("Direct reference to suspected bridge method: " + bridge.getOwner() + '/' + bridge.getName() + bridge.getDesc()
+								+ " from " + caller.getOwner() + '/' + caller.getName() + caller.getDesc());
 					}
-				});
+				}
 
 				System.out.println("Verification complete, writing to mapping file");
 			} else {
@@ -164,15 +166,17 @@ public class CommandFixBridges extends Command {
 			assert Objects.equals(left.getOwner(), right.getOwner());
 
 			assert !Objects.equals(left.getDesc(), right.getDesc());
-			Type leftReturn = Type.getReturnType(left.getDesc());
-			Type rightReturn = Type.getReturnType(right.getDesc());
+			Descriptor leftDesc = descriptors.get(left.getDesc());
+			Descriptor rightDesc = descriptors.get(right.getDesc());
+			Type leftReturn = leftDesc.getReturnType();
+			Type rightReturn = rightDesc.getReturnType();
 
 			if (!leftReturn.equals(rightReturn)) {
-				return isLeftYounger(jarEntry, leftReturn, rightReturn) ? right : left;
+				return isLeftYounger(jarEntry, subtypes, leftReturn, rightReturn) ? right : left;
 			}
 
-			Type[] leftArgs = Type.getArgumentTypes(left.getDesc());
-			Type[] rightArgs = Type.getArgumentTypes(right.getDesc());
+			Type[] leftArgs = leftDesc.getArgumentTypes();
+			Type[] rightArgs = rightDesc.getArgumentTypes();
 			assert leftArgs.length == rightArgs.length;
 
 			for (int i = 0; i < leftArgs.length; i++) {
@@ -180,7 +184,7 @@ public class CommandFixBridges extends Command {
 				Type rightArg = rightArgs[i];
 
 				if (!leftArg.equals(rightArg)) {
-					return isLeftYounger(jarEntry, leftArg, rightArg) ? right : left;
+					return isLeftYounger(jarEntry, subtypes, leftArg, rightArg) ? right : left;
 				}
 			}
 
@@ -245,7 +249,7 @@ public class CommandFixBridges extends Command {
 		}
 	}
 
-	private static boolean isLeftYounger(ClassStorage classes, Type type, Type potentialParent) {
+	private static boolean isLeftYounger(ClassStorage classes, SubtypeOracle subtypes, Type type, Type potentialParent) {
 		assert !type.equals(potentialParent);
 		assert type.getSort() == Type.OBJECT;
 		String parentName = potentialParent.getInternalName();
@@ -264,35 +268,11 @@ public class CommandFixBridges extends Command {
 		JarClassEntry target = classes.getClass(parentName, false);
 		if (target == null) return true; //Ehhhh probably
 
-		if (!target.isInterface()) {
-			JarClassEntry parent = origin;
-	    	do {
-	    		parent = parent.getSuperClass(classes);
-	    	} while (parent != null && parent != target);
-
-	    	//Found the target as a parent class <=> parent not null
-	    	return parent != null;
-		} else {
-	    	Deque<JarClassEntry> interfaces = new ArrayDeque<>(origin.getAllInterfaces(classes));
-
-			JarClassEntry itf;
-			while ((itf = interfaces.poll()) != null) {
-				if (itf == target) {
-					return true; //Found the right interface
-				} else {
-					interfaces.addAll(itf.getAllInterfaces(classes));
-				}
-			}
-
-			return false; //Couldn't find any matching interfaces in the hierarchy
-		}
+		//Found the target as a parent class or interface
+		return subtypes.isAssignableFrom(parentName, type.getInternalName());
 	}
 
 	private static final class Method {
-		private static final Map<String, JarClassEntry> VIRTUAL_CLASS_STORAGE = new HashMap<>();
-		static {
-			VIRTUAL_CLASS_STORAGE.put("java/lang/Object", null); //Don't try Object, things break
-		}
 		public final JarClassEntry owner;
 		public final JarMethodEntry method;
 
@@ -310,24 +290,7 @@ public class CommandFixBridges extends Command {
 		}
 
 		public boolean hasParent(ClassStorage classes) {
-			return !Access.isPrivateOrStatic(method.getAccess()) && hasParent0((name, create) -> {
-				JarClassEntry out = classes.getClass(name, create);
-				if (out != null || create) return out;
-
-				//Tack on additional library classes (ie Java ones) for the sake of inheritance
-				if (!VIRTUAL_CLASS_STORAGE.containsKey(name)) {
-					try {
-						assert name != null: "Tried to get null class name?";
-						VIRTUAL_CLASS_STORAGE.put(name, new VirtualJarClassEntry(name));
-					} catch (IOException e) {
-						System.err.println("Unable to create virtual class for " + name);
-						e.printStackTrace();
-						VIRTUAL_CLASS_STORAGE.put(name, null);
-					}
-				}
-
-				return VIRTUAL_CLASS_STORAGE.get(name);
-			});
+			return !Access.isPrivateOrStatic(method.getAccess()) && hasParent0(classes);
 		}
 
 		private boolean hasParent0(ClassStorage classes) {
@@ -345,14 +308,9 @@ public class CommandFixBridges extends Command {
 	    		return true;
 	    	}
 
-	    	Deque<JarClassEntry> interfaces = new ArrayDeque<>(owner.getAllInterfaces(classes));
-
-			JarClassEntry itf;
-			while ((itf = interfaces.poll()) != null) {
+			for (JarClassEntry itf : owner.getTransitiveInterfaces(classes)) {
 				if (itf.getMethods().contains(method)) {
 					return true;
-				} else {
-					interfaces.addAll(itf.getAllInterfaces(classes));
 				}
 			}
 
@@ -375,11 +333,11 @@ public class CommandFixBridges extends Command {
 				super(Opcodes.ASM7);
 
 				this.targetBridge = targetBridge;
-				String descriptor = targetBridge.desc;
-				args = Type.getArgumentTypes(descriptor);
+				Descriptor descriptor = descriptors.get(targetBridge.desc);
+				args = descriptor.getArgumentTypes();
 
 				int localSize = Arrays.stream(args).mapToInt(Type::getSize).sum() + 1;
-				argSize = Math.max(localSize, (returnType = Type.getReturnType(descriptor)).getSize());
+				argSize = Math.max(localSize, (returnType = descriptor.getReturnType()).getSize());
 
 				seenArg = new boolean[localSize];
 				for (int arg = 0, i = 1; arg < args.length; arg++) {
@@ -487,7 +445,8 @@ public class CommandFixBridges extends Command {
 							return;
 						}
 
-						Type[] bridgedArgs = Type.getArgumentTypes(descriptor);
+						Descriptor bridgedDesc = descriptors.get(descriptor);
+						Type[] bridgedArgs = bridgedDesc.getArgumentTypes();
 						if (bridgedArgs.length != args.length) {
 							invalidate(); //Wrong number of arguments
 							return;
@@ -499,7 +458,7 @@ public class CommandFixBridges extends Command {
 								return;
 							}
 						}
-						if (!relatedTypes(Type.getReturnType(descriptor), returnType)) {
+						if (!relatedTypes(bridgedDesc.getReturnType(), returnType)) {
 							invalidate(); //Not the same as, nor narrowing, the return type
 							return;
 						}
@@ -530,28 +489,8 @@ public class CommandFixBridges extends Command {
 				JarClassEntry target = classes.getClass(parentName, false);
 				if (target == null) return true; //Ehhhh probably
 
-				if (!target.isInterface()) {
-					JarClassEntry parent = origin;
-			    	do {
-			    		parent = parent.getSuperClass(classes);
-			    	} while (parent != null && parent != target);
-
-			    	//Found the target as a parent class <=> parent not null
-			    	return parent != null;
-				} else {
-			    	Deque<JarClassEntry> interfaces = new ArrayDeque<>(origin.getAllInterfaces(classes));
-
-					JarClassEntry itf;
-					while ((itf = interfaces.poll()) != null) {
-						if (itf == target) {
-							return true; //Found the right interface
-						} else {
-							interfaces.addAll(itf.getAllInterfaces(classes));
-						}
-					}
-
-					return false; //Couldn't find any matching interfaces in the hierarchy
-				}
+				//Found the target as a parent class or interface
+				return subtypes.isAssignableFrom(parentName, type.getInternalName());
 			}
 
 			@Override
@@ -669,12 +608,16 @@ public class CommandFixBridges extends Command {
 		}
 		private final Map<String, MethodDetail> methods = new HashMap<>();
 		final ClassStorage classes;
+		final DescriptorIndex descriptors;
+		final SubtypeOracle subtypes;
 		boolean visitingInterface;
 
-		public BridgeDetector(ClassStorage classes, Method... methods) {
+		public BridgeDetector(ClassStorage classes, DescriptorIndex descriptors, SubtypeOracle subtypes, Method... methods) {
 			super(Opcodes.ASM7);
 
 			this.classes = classes;
+			this.descriptors = descriptors;
+			this.subtypes = subtypes;
 			for (Method method : methods) {
 				MethodDetail detail = new MethodDetail(method);
 
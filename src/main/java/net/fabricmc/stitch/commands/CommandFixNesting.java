@@ -47,14 +47,16 @@ public class CommandFixNesting extends Command {
 
 	public static void run(File jar) throws IOException {
 		JarRootEntry jarEntry = new JarRootEntry(jar);
-		Builder.create(jarEntry).joinMethodEntries(false).build().apply();
+		Builder.create(jarEntry).joinMethodEntries(false).lazyMembers(true).build().apply();
 
 		long nests = jarEntry.getClasses().stream().filter(entry -> !entry.getInnerClasses().isEmpty()).count();
 		if (nests > 0) {
 			System.out.println("Found " + nests + " nested classes to check");
 
 			File oldJar = new File(jar.getParentFile(), jar.getName() + ".check"); 
-			jar.renameTo(oldJar);
+			if (!jar.renameTo(oldJar)) {
+				throw new IOException("Unable to move " + jar + " to " + oldJar);
+			}
 
 			try (JarFile oldJarFile = new JarFile(oldJar); FileSystemDelegate newFS = StitchUtil.getJarFileSystem(jar, true)) {
 				List<JarClassEntry> missingInners = new ArrayList<>();
@@ -140,7 +142,9 @@ public class CommandFixNesting extends Command {
 				}
 			}
 
-			oldJar.delete();
+			if (!oldJar.delete()) {
+				System.err.println("Unable to delete " + oldJar);
+			}
 		} else {
 			System.out.println("Found no nested classes in input");
 		}
@@ -54,7 +54,7 @@ public class CommandUpdateIntermediary extends Command {
         File fileNew = new File(args[1]);
         JarRootEntry jarNew = new JarRootEntry(fileNew);
         try {
-            JarReader reader = new JarReader(jarNew);
+            JarReader reader = JarReader.Builder.create(jarNew).diffAgainst(jarOld).build();
             reader.apply();
         } catch (IOException e) {
             e.printStackTrace();
@@ -12,9 +12,6 @@ import java.util.Objects;
 import java.util.Set;
 import java.util.function.Consumer;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
-
-import org.objectweb.asm.Type;
 
 import net.fabricmc.mappings.EntryTriple;
 import net.fabricmc.mappings.FieldEntry;
@@ -22,6 +19,8 @@ import net.fabricmc.mappings.Mappings;
 import net.fabricmc.mappings.MappingsProvider;
 import net.fabricmc.mappings.MethodEntry;
 import net.fabricmc.stitch.Command;
+import net.fabricmc.stitch.representation.DescriptorIndex;
+import net.fabricmc.stitch.representation.DescriptorIndex.Descriptor;
 import net.fabricmc.stitch.util.StitchUtil;
 
 public class CommandVerifyIntermediary extends Command {
@@ -54,6 +53,7 @@ public class CommandVerifyIntermediary extends Command {
 			namespaces = mappings.getNamespaces().toArray(new String[0]);
 		}
 
+		DescriptorIndex descriptors = new DescriptorIndex();
 		for (String namespace : namespaces) {
 			Set<String> classes = mappings.getClassEntries().stream().map(entry -> entry.get(namespace)).collect(Collectors.toSet());
 			//A few classes could have obfuscated members but not an obfuscated name, thus we'll want to pull from any member's owners that don't seem to be an Intermediary name 
@@ -70,7 +70,7 @@ public class CommandVerifyIntermediary extends Command {
 				if (method == null) continue; //Hole
 
 				methods++;
-				if (!isValid(classes, Stream.concat(Arrays.stream(Type.getArgumentTypes(method.getDesc())), Stream.of(Type.getReturnType(method.getDesc()))))) {
+				if (!isValid(classes, descriptors.get(method.getDesc()))) {
 					System.out.println("Descriptor for " + StitchUtil.memberString(method) + " is invalid");
 					badMethods++;
 				}
@@ -86,7 +86,7 @@ public class CommandVerifyIntermediary extends Command {
 				if (field == null) continue; //Hole
 
 				fields++;
-				if (!isValid(classes, Stream.of(Type.getType(field.getDesc())))) {
+				if (!isValid(classes, descriptors.get(field.getDesc()))) {
 					System.out.println("Descriptor for " + StitchUtil.memberString(field) + " is invalid");
 					badFields++;
 				}
@@ -104,18 +104,8 @@ public class CommandVerifyIntermediary extends Command {
 		entries.stream().filter(e -> Collections.frequency(entries, e) > 1).distinct().forEach(duplicateAcceptor);
 	}
 
-	private static boolean isValid(Set<String> classes, Stream<Type> types) {
-		return types.filter(type -> {
-			switch (type.getSort()) {
-				case Type.ARRAY:
-					return type.getElementType().getSort() == Type.OBJECT;
-
-				case Type.OBJECT:
-					return true;
-
-				default:
-					return false;
-			}
-		}).map(type -> (type.getSort() == Type.ARRAY ? type.getElementType() : type).getInternalName()).filter(type -> type.startsWith("net/minecraft/") || type.startsWith("argo/") || type.indexOf('/') <= 0).allMatch(classes::contains);
+	private static boolean isValid(Set<String> classes, Descriptor descriptor) {
+		//Any object type, including those arrays are of, should exist if it looks like it was obfuscated
+		return descriptor.allClassesMatch(type -> !(type.startsWith("net/minecraft/") || type.startsWith("argo/") || type.indexOf('/') <= 0) || classes.contains(type));
 	}
 }
\ No newline at end of file
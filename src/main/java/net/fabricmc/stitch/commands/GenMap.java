@@ -18,90 +18,184 @@ package net.fabricmc.stitch.commands;
 import net.fabricmc.mappings.*;
 import org.checkerframework.checker.nullness.qual.Nullable;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.function.Function;
 
+/**
+ * Names of classes and members going from one namespace to another.
+ *
+ * Members are kept in one open addressed table each for fields and methods, keyed by their owner,
+ * name and descriptor, so they can be looked up from their parts without making an {@link EntryTriple}
+ * first. Owners and descriptors are pooled as they are added, as most are shared by many members.
+ */
 public class GenMap {
-    private static class Class {
-        private final String name;
-        private final Map<EntryTriple, EntryTriple> fieldMaps = new HashMap<>();
-        private final Map<EntryTriple, EntryTriple> methodMaps = new HashMap<>();
+    private static final class MemberTable {
+        private static final int MIN_CAPACITY = 16;
+
+        private String[] owners, names, descs;
+        private EntryTriple[] values;
+        private int size;
+
+        private static int hash(String owner, String name, String desc) {
+            int h = (owner.hashCode() * 31 + name.hashCode()) * 31 + desc.hashCode();
+            return h ^ (h >>> 16);
+        }
+
+        private int slot(String owner, String name, String desc) {
+            if (owners == null) return -1;
+
+            int mask = owners.length - 1;
+            for (int i = hash(owner, name, desc) & mask; owners[i] != null; i = (i + 1) & mask) {
+                if (names[i].equals(name) && descs[i].equals(desc) && owners[i].equals(owner)) {
+                    return i;
+                }
+            }
 
-        public Class(String name) {
-            this.name = name;
+            return -1;
+        }
+
+        @Nullable
+        EntryTriple get(String owner, String name, String desc) {
+            int slot = slot(owner, name, desc);
+            return slot >= 0 ? values[slot] : null;
+        }
+
+        void put(String owner, String name, String desc, EntryTriple value) {
+            int slot = slot(owner, name, desc);
+
+            if (slot >= 0) {
+                values[slot] = value;
+                return;
+            }
+
+            if (owners == null) {
+                resize(MIN_CAPACITY);
+            } else if ((size + 1) * 4 > owners.length * 3) {
+                resize(owners.length * 2);
+            }
+
+            int mask = owners.length - 1;
+            int i = hash(owner, name, desc) & mask;
+            while (owners[i] != null) i = (i + 1) & mask;
+
+            owners[i] = owner;
+            names[i] = name;
+            descs[i] = desc;
+            values[i] = value;
+            size++;
+        }
+
+        private void resize(int capacity) {
+            String[] oldOwners = owners, oldNames = names, oldDescs = descs;
+            EntryTriple[] oldValues = values;
+            owners = new String[capacity];
+            names = new String[capacity];
+            descs = new String[capacity];
+            values = new EntryTriple[capacity];
+            if (oldOwners == null) return;
+
+            int mask = capacity - 1;
+            for (int j = 0; j < oldOwners.length; j++) {
+                if (oldOwners[j] != null) {
+                    int i = hash(oldOwners[j], oldNames[j], oldDescs[j]) & mask;
+                    while (owners[i] != null) i = (i + 1) & mask;
+
+                    owners[i] = oldOwners[j];
+                    names[i] = oldNames[j];
+                    descs[i] = oldDescs[j];
+                    values[i] = oldValues[j];
+                }
+            }
         }
     }
 
-    private final Map<String, Class> map = new HashMap<>();
+    private final Map<String, String> classes = new HashMap<>();
+    private final MemberTable fields = new MemberTable();
+    private final MemberTable methods = new MemberTable();
+    private final Map<String, String> pool = new HashMap<>();
 
     public GenMap() {
     }
 
+    private String pooled(String value) {
+        String out = pool.putIfAbsent(value, value);
+        return out != null ? out : value;
+    }
+
+    /**
+     * Add a class, keeping anything already added for it, so members can be added before their class
+     */
     public void addClass(String from, String to) {
-        map.put(from, new Class(to));
+        classes.put(pooled(from), to);
     }
 
     public void addField(EntryTriple from, EntryTriple to) {
-        map.get(from.getOwner()).fieldMaps.put(from, to);
+        add(fields, from, to);
     }
 
     public void addMethod(EntryTriple from, EntryTriple to) {
-        map.get(from.getOwner()).methodMaps.put(from, to);
+        add(methods, from, to);
+    }
+
+    private void add(MemberTable table, EntryTriple from, EntryTriple to) {
+        String owner = pooled(from.getOwner());
+        if (!classes.containsKey(owner)) classes.put(owner, owner); //Classes only known from their members map to themselves
+
+        table.put(owner, from.getName(), pooled(from.getDesc()), to);
     }
 
     public void load(Mappings mappings, String from, String to) {
         for (ClassEntry classEntry : mappings.getClassEntries()) {
         	String fromClass = classEntry.get(from);
         	if (fromClass == null) continue;
-            map.put(fromClass, new Class(classEntry.get(to)));
+            addClass(fromClass, classEntry.get(to));
         }
 
         for (FieldEntry fieldEntry : mappings.getFieldEntries()) {
         	EntryTriple fromField = fieldEntry.get(from);
         	if (fromField == null) continue;
-            map.computeIfAbsent(fromField.getOwner(), Class::new).fieldMaps.put(fromField, fieldEntry.get(to));
+            addField(fromField, fieldEntry.get(to));
         }
 
         for (MethodEntry methodEntry : mappings.getMethodEntries()) {
         	EntryTriple fromMethod = methodEntry.get(from);
         	if (fromMethod == null) continue;
-            map.computeIfAbsent(fromMethod.getOwner(), Class::new).methodMaps.put(fromMethod, methodEntry.get(to));
+            addMethod(fromMethod, methodEntry.get(to));
         }
     }
-    
-    @Nullable
-    public String getClass(String from) {
-        return map.containsKey(from) ? map.get(from).name : null;
+
+    /**
+     * Load the given tiny v1 file in a single pass, adding any intermediary counters it has to the given map if there is one
+     */
+    public void load(File file, String from, String to, @Nullable Map<String, Integer> counters) throws IOException {
+        TinyReader.load(file, from, to, this, counters);
     }
 
     @Nullable
-    private EntryTriple get(EntryTriple entry, Function<Class, Map<EntryTriple, EntryTriple>> mapGetter) {
-        if (map.containsKey(entry.getOwner())) {
-            return mapGetter.apply(map.get(entry.getOwner())).get(entry);
-        }
-
-        return null;
+    public String getClass(String from) {
+        return classes.get(from);
     }
 
     @Nullable
     public EntryTriple getField(String owner, String name, String desc) {
-        return get(new EntryTriple(owner, name, desc), (c) -> c.fieldMaps);
+        return fields.get(owner, name, desc);
     }
 
     @Nullable
     public EntryTriple getField(EntryTriple entry) {
-        return get(entry, (c) -> c.fieldMaps);
+        return getField(entry.getOwner(), entry.getName(), entry.getDesc());
     }
 
     @Nullable
     public EntryTriple getMethod(String owner, String name, String desc) {
-        return get(new EntryTriple(owner, name, desc), (c) -> c.methodMaps);
+        return methods.get(owner, name, desc);
     }
 
     @Nullable
     public EntryTriple getMethod(EntryTriple entry) {
-        return get(entry, (c) -> c.methodMaps);
+        return getMethod(entry.getOwner(), entry.getName(), entry.getDesc());
     }
 
     public static class Dummy extends GenMap {
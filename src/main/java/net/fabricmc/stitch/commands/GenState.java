@@ -18,7 +18,6 @@ package net.fabricmc.stitch.commands;
 
 import net.fabricmc.mappings.EntryTriple;
 import net.fabricmc.mappings.Mappings;
-import net.fabricmc.mappings.MappingsProvider;
 import net.fabricmc.stitch.representation.*;
 import net.fabricmc.stitch.util.MatcherUtil;
 import net.fabricmc.stitch.util.Pair;
@@ -31,10 +30,17 @@ import java.io.*;
 import java.util.*;
 import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
+import java.util.stream.IntStream;
 
 class GenState {
+	/**
+	 * Maps classes to their intermediary names, remembering each class and descriptor it maps for the rest of
+	 * the run. A class' name never changes once first worked out, so remembering it doesn't change the order numbers are given in.
+	 */
 	private class InterRemapper extends Remapper {
 		private final ClassStorage storage;
+		private final Map<String, String> names = new HashMap<>();
+		private final Map<String, String> descs = new HashMap<>();
 
 		public InterRemapper(ClassStorage storage) {
 			this.storage = storage;
@@ -42,6 +48,22 @@ class GenState {
 
 		@Override
 		public String map(String internalName) {
+			String out = names.get(internalName);
+
+			//Skipped classes map to null
+			if (out == null && !names.containsKey(internalName)) {
+				out = findName(internalName);
+				names.put(internalName, out);
+			}
+
+			return out;
+		}
+
+		public String mapDescriptor(String descriptor) {
+			return descs.computeIfAbsent(descriptor, desc -> descriptors.get(desc).remap(this));
+		}
+
+		private String findName(String internalName) {
 			JarClassEntry entry = storage.getClass(internalName, false);
 
 			if (entry != null) {
@@ -71,12 +93,127 @@ class GenState {
 			throw new UnsupportedOperationException();
 		}
 	}
-	
+
+    /**
+     * What could be found out about the name of a class or member without handing out any new numbers
+     */
+    private static final class Resolution {
+        static final Resolution UNOBFUSCATED = new Resolution(null, null); //Keeps its name, so has no mapping type
+        static final Resolution SKIPPED = new Resolution(MappingType.SKIPPED, null);
+        static final Resolution SKIPPED_NOTED = new Resolution(MappingType.SKIPPED, null, null, null, true);
+        static final Resolution RETAINED = new Resolution(MappingType.RETAINED, null);
+        static final Resolution UNMATCHED = new Resolution(MappingType.RENAMED, null);
+        static final Resolution RELATED = new Resolution(MappingType.RENAMED, null); //In a family another method was matched in
+
+        final MappingType type;
+        final String matched; //The intermediary name it was matched to, if it is being renamed
+        final Map<String, List<NameSource>> names; //Methods only, the names anything related was matched to
+        final Set<JarMethodEntry> related;
+        final boolean noted; //Methods only, whether skipping it is worth mentioning
+
+        private Resolution(MappingType type, String matched) {
+            this(type, matched, null, null, false);
+        }
+
+        private Resolution(MappingType type, String matched, Map<String, List<NameSource>> names, Set<JarMethodEntry> related, boolean noted) {
+            this.type = type;
+            this.matched = matched;
+            this.names = names;
+            this.related = related;
+            this.noted = noted;
+        }
+
+        static Resolution of(MappingType type, @Nullable String matched) {
+            if (matched != null) return new Resolution(type, matched);
+
+            switch (type) {
+            case SKIPPED:
+                return SKIPPED;
+
+            case RETAINED:
+                return RETAINED;
+
+            case RENAMED:
+                return UNMATCHED;
+
+            default:
+                throw new IllegalStateException("Unexpected mapping type: " + type);
+            }
+        }
+
+        static Resolution matchedNames(Map<String, List<NameSource>> names, Set<JarMethodEntry> related) {
+            return new Resolution(MappingType.RENAMED, null, names, related, false);
+        }
+    }
+
+    /**
+     * Where a method was matched to a name from, which is only described if the name ends up in a conflict
+     */
+    private static final class NameSource {
+        final ClassStorage storage;
+        final JarClassEntry owner;
+        final String suffix;
+
+        NameSource(ClassStorage storage, JarClassEntry owner, String suffix) {
+            this.storage = storage;
+            this.owner = owner;
+            this.suffix = suffix;
+        }
+    }
+
+    /**
+     * How every class and member in the jar is to be named, worked out in parallel before anything is written.
+     *
+     * Classes are numbered in the order they are written, and each class' fields then methods are numbered
+     * on from the members of the class before it. Anything without a new name shares the same few resolutions.
+     */
+    private static final class Classification {
+        static final Classification EMPTY = new Classification(Collections.emptyList(), null);
+
+        final List<JarClassEntry> classes;
+        final ClassStorage storageOld; //For resolving any methods which were left until they are written
+        final Map<JarClassEntry, Integer> ids = new IdentityHashMap<>();
+        final Resolution[] classTypes;
+        final int[] firstField, firstMethod; //Each class' first member ID, with one past the last class' members at the end
+        Resolution[] memberTypes;
+        final String[] namePrefixes, names; //Each class' name, along with the prefix it was worked out with
+
+        Classification(List<JarClassEntry> classes, ClassStorage storageOld) {
+            this.classes = classes;
+            this.storageOld = storageOld;
+            this.classTypes = new Resolution[classes.size()];
+            this.firstField = new int[classes.size() + 1];
+            this.firstMethod = new int[classes.size() + 1];
+            this.namePrefixes = new String[classes.size()];
+            this.names = new String[classes.size()];
+
+            for (int id = 0; id < classes.size(); id++) {
+                ids.put(classes.get(id), id);
+            }
+        }
+
+        int getId(JarClassEntry c) {
+            Integer id = ids.get(c);
+            return id != null ? id : -1;
+        }
+
+        Resolution getField(int classId, int index) {
+            return memberTypes[firstField[classId] + index];
+        }
+
+        Resolution getMethod(int classId, int index) {
+            return memberTypes[firstMethod[classId] + index];
+        }
+    }
+
     private final Map<String, Integer> counters = new HashMap<>();
     private final Map<AbstractJarEntry, Integer> values = new IdentityHashMap<>();
     private final GenMap server, client;
     private GenMap oldToIntermediary, newToOld;
     private GenMap newToIntermediary;
+    private DescriptorIndex descriptors = new DescriptorIndex();
+    private Classification classification = Classification.EMPTY;
+    private InterRemapper remapper;
     private boolean interactive = true;
     private boolean keepGlue = false;
     private Scanner scanner = new Scanner(System.in);
@@ -133,18 +270,18 @@ class GenState {
     }
 
     public void generate(File file, JarRootEntry jarEntry, JarRootEntry jarOld) throws IOException {
+        descriptors = jarEntry.getDescriptors();
+
         if (file.exists()) {
             System.err.println("Target file exists - loading...");
             newToIntermediary = new GenMap();
-            try (FileInputStream inputStream = new FileInputStream(file)) {
-                newToIntermediary.load(
-                        MappingsProvider.readTinyMappings(inputStream),
-                        "glue",
-                        "intermediary"
-                );
-            }
+            newToIntermediary.load(file, "glue", "intermediary", null);
         }
 
+        //Look everything up in parallel, then hand out new numbers whilst writing in the same order as always
+        classification = classify(jarOld, jarEntry);
+        remapper = new InterRemapper(jarEntry);
+
         try (FileWriter fileWriter = new FileWriter(file)) {
             try (BufferedWriter writer = new BufferedWriter(fileWriter)) {
             	writer.write("v1\tintermediary");
@@ -152,13 +289,69 @@ class GenState {
                 writer.write("\tserver\tclient\n");
 
                 for (JarClassEntry c : jarEntry.getClasses()) {
-                    addClass(writer, c, jarOld, jarEntry, this.targetNamespace);
+                    addClass(writer, c, jarEntry, this.targetNamespace);
                 }
 
                 for (Map.Entry<String, Integer> counter : counters.entrySet()) {
                     writer.write("# INTERMEDIARY-COUNTER " + counter.getKey() + " " + counter.getValue() + "\n");
                 }
             }
+        } finally {
+            classification = Classification.EMPTY;
+            remapper = null;
+        }
+    }
+
+    private Classification classify(ClassStorage storageOld, JarRootEntry storage) {
+        List<JarClassEntry> classes = new ArrayList<>();
+        for (JarClassEntry c : storage.getClasses()) {
+            inWritingOrder(c, classes);
+        }
+
+        Classification out = new Classification(classes, storageOld);
+        int[] fieldCounts = new int[classes.size()];
+        int[] methodCounts = new int[classes.size()];
+
+        //Reads any lazily read members in parallel too
+        IntStream.range(0, classes.size()).parallel().forEach(id -> {
+            fieldCounts[id] = classes.get(id).getFields().size();
+            methodCounts[id] = classes.get(id).getMethods().size();
+        });
+
+        int members = 0;
+        for (int id = 0; id < classes.size(); id++) {
+            out.firstField[id] = members;
+            members += fieldCounts[id];
+            out.firstMethod[id] = members;
+            members += methodCounts[id];
+        }
+        out.firstField[classes.size()] = out.firstMethod[classes.size()] = members;
+        out.memberTypes = new Resolution[members];
+        Set<JarMethodEntry> named = Collections.synchronizedSet(StitchUtil.newIdentityHashSet());
+
+        IntStream.range(0, classes.size()).parallel().forEach(id -> {
+            JarClassEntry c = classes.get(id);
+            out.classTypes[id] = resolveClass(storage, c);
+
+            int member = out.firstField[id];
+            for (JarFieldEntry f : c.getFields()) {
+                out.memberTypes[member++] = resolveField(storage, c, f);
+            }
+
+            member = out.firstMethod[id];
+            for (JarMethodEntry m : c.getMethods()) {
+                out.memberTypes[member++] = resolveMethod(storageOld, storage, c, m, named);
+            }
+        });
+
+        return out;
+    }
+
+    private static void inWritingOrder(JarClassEntry c, List<JarClassEntry> out) {
+        out.add(c);
+
+        for (JarClassEntry cc : c.getInnerClasses()) {
+            inWritingOrder(cc, out);
         }
     }
 
@@ -193,8 +386,10 @@ class GenState {
     }
 
     public MappingType isMappedMethod(ClassStorage storage, JarClassEntry c, JarMethodEntry m) {
-    	if (!shouldNoteMethod(storage, c, m)) return MappingType.SKIPPED;
+    	return shouldNoteMethod(storage, c, m) ? isMappedNotedMethod(c, m) : MappingType.SKIPPED;
+    }
 
+    private MappingType isMappedNotedMethod(JarClassEntry c, JarMethodEntry m) {
     	String name = m.getName();
         if (name.startsWith("method_")) return MappingType.RENAMED;
 
@@ -245,12 +440,50 @@ class GenState {
 		return seenAny;
     }
 
-    private String getClassName(ClassStorage storage, JarClassEntry c, String translatedPrefix) {
+    private Resolution resolveClass(ClassStorage storage, JarClassEntry c) {
     	if (!obfuscatedPatterns.stream().anyMatch(p -> p.matcher(c.getName()).matches())) {
+    		return Resolution.UNOBFUSCATED;
+    	}
+
+    	MappingType type = isMappedClass(storage, c);
+    	String findName = null;
+
+    	if (type == MappingType.RENAMED) {
+            if (newToIntermediary != null) {
+                findName = newToIntermediary.getClass(c.getFullyQualifiedName());
+            }
+
+            if (findName == null && newToOld != null) {
+                findName = newToOld.getClass(c.getFullyQualifiedName());
+                if (findName != null) {
+                    findName = oldToIntermediary.getClass(findName);
+                }
+            }
+    	}
+
+    	return Resolution.of(type, findName);
+    }
+
+    private String getClassName(ClassStorage storage, JarClassEntry c, String translatedPrefix) {
+    	int id = classification.getId(c);
+    	if (id < 0) return findClassName(resolveClass(storage, c), c, translatedPrefix);
+
+    	//Both addClass and the remapper ask, normally with the same prefix
+    	if (!translatedPrefix.equals(classification.namePrefixes[id])) {
+    		classification.namePrefixes[id] = translatedPrefix;
+    		classification.names[id] = findClassName(classification.classTypes[id], c, translatedPrefix);
+    	}
+
+    	return classification.names[id];
+    }
+
+    private String findClassName(Resolution resolution, JarClassEntry c, String translatedPrefix) {
+
+    	if (resolution.type == null) {
     		return c.getFullyQualifiedName();
     	} else {
     		String className;
-    		switch (isMappedClass(storage, c)) {
+    		switch (resolution.type) {
     		case SKIPPED:
     			return null;
 
@@ -260,64 +493,33 @@ class GenState {
                 break;
 
     		case RENAMED:
-                className = null;
-
-                if (newToIntermediary != null) {
-                    String findName = newToIntermediary.getClass(c.getFullyQualifiedName());
-                    if (findName != null) {
-                        String[] r = findName.split("\\$");
-                        className = r[r.length - 1];
-                        if (r.length == 1) {
-                            translatedPrefix = "";
-                        }
+                if (resolution.matched != null) {
+                    String[] r = resolution.matched.split("\\$");
+                    className = r[r.length - 1];
+                    if (r.length == 1) {
+                        translatedPrefix = "";
                     }
-                }
-
-                if (className == null && newToOld != null) {
-                    String findName = newToOld.getClass(c.getFullyQualifiedName());
-                    if (findName != null) {
-                        findName = oldToIntermediary.getClass(findName);
-                        if (findName != null) {
-                            String[] r = findName.split("\\$");
-                            className = r[r.length - 1];
-                            if (r.length == 1) {
-                                translatedPrefix = "";
-                            }
-
-                        }
-                    }
-                }
-
-                if (className == null) {
+                } else {
                     className = next(c, "class");
                 }
                 break;
 
     		default:
-    			throw new IllegalStateException("Unexpected mapping type: " + isMappedClass(storage, c));
+    			throw new IllegalStateException("Unexpected mapping type: " + resolution.type);
             }
 
     		return translatedPrefix + className;
     	}
     }
-    
-    @Nullable
-    private String getFieldName(ClassStorage storage, JarClassEntry c, JarFieldEntry f) {
-    	switch (isMappedField(storage, c, f)) {
-    	case SKIPPED:
-    		return null;
-    		
-    	case RETAINED:
-    		return f.getName();
-    		
-    	case RENAMED:
-    		break;
-    	}
+
+    private Resolution resolveField(ClassStorage storage, JarClassEntry c, JarFieldEntry f) {
+        MappingType type = isMappedField(storage, c, f);
+        if (type != MappingType.RENAMED) return Resolution.of(type, null);
 
         if (newToIntermediary != null) {
             EntryTriple findEntry = newToIntermediary.getField(c.getFullyQualifiedName(), f.getName(), f.getDescriptor());
             if (findEntry != null) {
-                return findEntry.getName();
+                return Resolution.of(type, findEntry.getName());
             }
         }
 
@@ -326,12 +528,28 @@ class GenState {
             if (findEntry != null) {
                 findEntry = oldToIntermediary.getField(findEntry);
                 if (findEntry != null) {
-                    return findEntry.getName();
+                    return Resolution.of(type, findEntry.getName());
                 }
             }
         }
 
-        return next(f, "field");
+        return Resolution.UNMATCHED;
+    }
+
+    @Nullable
+    private String getFieldName(Resolution resolution, JarFieldEntry f) {
+    	switch (resolution.type) {
+    	case SKIPPED:
+    		return null;
+    		
+    	case RETAINED:
+    		return f.getName();
+    		
+    	case RENAMED:
+    		break;
+    	}
+
+        return resolution.matched != null ? resolution.matched : next(f, "field");
     }
 
     private final Map<JarMethodEntry, String> methodNames = new IdentityHashMap<>();
@@ -378,13 +596,13 @@ class GenState {
         return builder.toString();
     }
 
-    private Set<JarMethodEntry> findNames(ClassStorage storageOld, ClassStorage storageNew, JarClassEntry c, JarMethodEntry m, Map<String, Set<String>> names) {
+    private Set<JarMethodEntry> findNames(ClassStorage storageOld, ClassStorage storageNew, JarClassEntry c, JarMethodEntry m, Map<String, List<NameSource>> names) {
         Set<JarMethodEntry> allEntries = new HashSet<>();
         findNames(storageOld, storageNew, c, m, names, allEntries);
         return allEntries;
     }
 
-    private void findNames(ClassStorage storageOld, ClassStorage storageNew, JarClassEntry c, JarMethodEntry m, Map<String, Set<String>> names, Set<JarMethodEntry> usedMethods) {
+    private void findNames(ClassStorage storageOld, ClassStorage storageNew, JarClassEntry c, JarMethodEntry m, Map<String, List<NameSource>> names, Set<JarMethodEntry> usedMethods) {
         if (!usedMethods.add(m)) {
             return;
         }
@@ -402,7 +620,7 @@ class GenState {
             if (newToIntermediary != null) {
                 findEntry = newToIntermediary.getMethod(cc.getFullyQualifiedName(), m.getName(), m.getDescriptor());
                 if (findEntry != null) {
-                    names.computeIfAbsent(findEntry.getName(), (s) -> new TreeSet<>()).add(getNamesListEntry(storageNew, cc) + suffix);
+                    names.computeIfAbsent(findEntry.getName(), (s) -> new ArrayList<>()).add(new NameSource(storageNew, cc, suffix));
                 }
             }
 
@@ -412,7 +630,7 @@ class GenState {
                     EntryTriple newToOldEntry = findEntry;
                     findEntry = oldToIntermediary.getMethod(newToOldEntry);
                     if (findEntry != null) {
-                        names.computeIfAbsent(findEntry.getName(), (s) -> new TreeSet<>()).add(getNamesListEntry(storageNew, cc) + suffix);
+                        names.computeIfAbsent(findEntry.getName(), (s) -> new ArrayList<>()).add(new NameSource(storageNew, cc, suffix));
                     } else {
                         // more involved...
                         JarClassEntry oldBase = storageOld.getClass(newToOldEntry.getOwner(), false);
@@ -423,7 +641,7 @@ class GenState {
                             for (JarClassEntry ccc : cccList) {
                                 findEntry = oldToIntermediary.getMethod(ccc.getFullyQualifiedName(), oldM.getName(), oldM.getDescriptor());
                                 if (findEntry != null) {
-                                    names.computeIfAbsent(findEntry.getName(), (s) -> new TreeSet<>()).add(getNamesListEntry(storageOld, ccc) + suffix);
+                                    names.computeIfAbsent(findEntry.getName(), (s) -> new ArrayList<>()).add(new NameSource(storageOld, ccc, suffix));
                                 }
                             }
                         }
@@ -439,9 +657,40 @@ class GenState {
         }
     }
 
+    private Resolution resolveMethod(ClassStorage storageOld, ClassStorage storageNew, JarClassEntry c, JarMethodEntry m, Set<JarMethodEntry> named) {
+        boolean noted = shouldNoteMethod(storageNew, c, m);
+        MappingType type = noted ? isMappedNotedMethod(c, m) : MappingType.SKIPPED;
+
+        switch (type) {
+        case SKIPPED:
+            return noted && !m.getName().startsWith("<") ? Resolution.SKIPPED_NOTED : Resolution.SKIPPED;
+
+        case RENAMED:
+            if (newToOld != null || newToIntermediary != null) {
+                //Matching a family names all of it, so the rest only need walking if they're written before it
+                if (named.contains(m)) return Resolution.RELATED;
+
+                Resolution resolution = resolveFamily(storageOld, storageNew, c, m);
+                if (!resolution.names.isEmpty()) named.addAll(resolution.related);
+                return resolution;
+            }
+
+            return Resolution.UNMATCHED; //Nothing to match against, so it will just be numbered
+
+        default:
+            return Resolution.of(type, null);
+        }
+    }
+
+    private Resolution resolveFamily(ClassStorage storageOld, ClassStorage storageNew, JarClassEntry c, JarMethodEntry m) {
+        Map<String, List<NameSource>> names = new HashMap<>();
+        Set<JarMethodEntry> related = findNames(storageOld, storageNew, c, m, names);
+        return Resolution.matchedNames(names, related);
+    }
+
     @Nullable
-    private String getMethodName(ClassStorage storageOld, ClassStorage storageNew, JarClassEntry c, JarMethodEntry m) {
-    	switch (isMappedMethod(storageNew, c, m)) {
+    private String getMethodName(ClassStorage storage, JarClassEntry c, Resolution resolution, JarMethodEntry m) {
+    	switch (resolution.type) {
     	case SKIPPED:
     		return null;
 
@@ -456,9 +705,13 @@ class GenState {
             return methodNames.get(m);
         }
 
-        if (newToOld != null || newToIntermediary != null) {
-            Map<String, Set<String>> names = new HashMap<>();
-            Set<JarMethodEntry> allEntries = findNames(storageOld, storageNew, c, m, names);
+        if (resolution == Resolution.RELATED) {
+            resolution = resolveFamily(classification.storageOld, storage, c, m);
+        }
+
+        if (resolution.names != null) {
+            Map<String, List<NameSource>> names = resolution.names;
+            Set<JarMethodEntry> allEntries = resolution.related;
             for (JarMethodEntry mm : allEntries) {
                 if (methodNames.containsKey(mm)) {
                     return methodNames.get(mm);
@@ -472,7 +725,12 @@ class GenState {
 
                 for (int i = 0; i < nameList.size(); i++) {
                     String s = nameList.get(i);
-                    System.out.println((i+1) + ") " + s + " <- " + StitchUtil.join(", ", names.get(s)));
+                    Set<String> sources = new TreeSet<>();
+                    for (NameSource source : names.get(s)) {
+                        sources.add(getNamesListEntry(source.storage, source.owner) + source.suffix);
+                    }
+
+                    System.out.println((i+1) + ") " + s + " <- " + StitchUtil.join(", ", sources));
                 }
 
                 if (!interactive) {
@@ -509,7 +767,8 @@ class GenState {
         return next(m, "method");
     }
 
-    private void addClass(BufferedWriter writer, JarClassEntry c, ClassStorage storageOld, ClassStorage storage, String translatedPrefix) throws IOException {
+    private void addClass(BufferedWriter writer, JarClassEntry c, ClassStorage storage, String translatedPrefix) throws IOException {
+        int id = classification.getId(c);
         String className = getClassName(storage, c, translatedPrefix);
         if (className == null) {
         	System.out.println("Skipped nooping " + c.getFullyQualifiedName());
@@ -530,10 +789,10 @@ class GenState {
 	        writer.write('\n');
         }
 
-        Remapper remapper = new InterRemapper(storage);
         
+        int index = 0;
         for (JarFieldEntry f : c.getFields()) {
-            String fName = getFieldName(storage, c, f);
+            String fName = getFieldName(classification.getField(id, index++), f);
             if (fName == null) {
                 //fName = f.getName();
             	System.out.println("Skipped nooping " + c.getFullyQualifiedName() + '#' + f.getName());
@@ -543,7 +802,7 @@ class GenState {
                 writer.write("FIELD\t");
                 writer.write(className);
                 writer.write('\t');
-                writer.write(remapper.mapDesc(f.getDescriptor()));
+                writer.write(remapper.mapDescriptor(f.getDescriptor()));
                 writer.write('\t');
                 writer.write(fName);
                 writer.write('\t');
@@ -561,10 +820,12 @@ class GenState {
             }
         }
 
+        index = 0;
         for (JarMethodEntry m : c.getMethods()) {
-            String mName = getMethodName(storageOld, storage, c, m);
+            Resolution resolution = classification.getMethod(id, index++);
+            String mName = getMethodName(storage, c, resolution, m);
             if (mName == null) {
-                if (!m.getName().startsWith("<") && shouldNoteMethod(storage, c, m)) {
+                if (resolution.noted) {
                    //mName = m.getName();
                    System.out.println("Skipped nooping " + c.getFullyQualifiedName() + '#' + m.getName() + m.getDescriptor());
                 }
@@ -574,7 +835,7 @@ class GenState {
                 writer.write("METHOD\t");
                 writer.write(className);
                 writer.write('\t');
-                writer.write(remapper.mapMethodDesc(m.getDescriptor()));
+                writer.write(remapper.mapDescriptor(m.getDescriptor()));
                 writer.write('\t');
                 writer.write(mName);
                 writer.write('\t');
@@ -593,7 +854,7 @@ class GenState {
         }
 
         for (JarClassEntry cc : c.getInnerClasses()) {
-            addClass(writer, cc, storageOld, storage, className + '$');
+            addClass(writer, cc, storage, className + '$');
         }
     }
 
@@ -601,52 +862,14 @@ class GenState {
         oldToIntermediary = new GenMap();
         newToOld = new GenMap.Dummy();
 
-        // TODO: only read once
-        try (FileReader fileReader = new FileReader(oldMappings)) {
-            try (BufferedReader reader = new BufferedReader(fileReader)) {
-                String line;
-                while ((line = reader.readLine()) != null) {
-                    if (line.startsWith("# INTERMEDIARY-COUNTER")) {
-                        String[] parts = line.split(" ");
-                        counters.put(parts[2], Integer.parseInt(parts[3]));
-                    }
-                }
-            }
-        }
-
-        try (FileInputStream inputStream = new FileInputStream(oldMappings)) {
-            oldToIntermediary.load(
-                    MappingsProvider.readTinyMappings(inputStream),
-                    "glue",
-                    "intermediary"
-            );
-        }
+        oldToIntermediary.load(oldMappings, "glue", "intermediary", counters);
     }
 
     public void prepareUpdate(File oldMappings, File matches) throws IOException {
         oldToIntermediary = new GenMap();
         newToOld = new GenMap();
 
-        // TODO: only read once
-        try (FileReader fileReader = new FileReader(oldMappings)) {
-            try (BufferedReader reader = new BufferedReader(fileReader)) {
-                String line;
-                while ((line = reader.readLine()) != null) {
-                    if (line.startsWith("# INTERMEDIARY-COUNTER")) {
-                        String[] parts = line.split(" ");
-                        counters.put(parts[2], Integer.parseInt(parts[3]));
-                    }
-                }
-            }
-        }
-
-        try (FileInputStream inputStream = new FileInputStream(oldMappings)) {
-            oldToIntermediary.load(
-                    MappingsProvider.readTinyMappings(inputStream),
-                    "glue",
-                    "intermediary"
-            );
-        }
+        oldToIntermediary.load(oldMappings, "glue", "intermediary", counters);
 
         try (FileReader fileReader = new FileReader(matches)) {
             try (BufferedReader reader = new BufferedReader(fileReader)) {
@@ -0,0 +1,188 @@
+/*
+ * Copyright (c) 2016, 2017, 2018, 2019 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.stitch.commands;
+
+import net.fabricmc.mappings.EntryTriple;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.objectweb.asm.commons.Remapper;
+import org.objectweb.asm.commons.SimpleRemapper;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+
+/**
+ * Reads tiny v1 mappings from a single read of the whole file in one pass, loading the names
+ * between two of its namespaces into a {@link GenMap} along with any intermediary counters.
+ *
+ * Members are written against the first namespace's names, so they are only put in the map once
+ * every class has been seen and their owners and descriptors can be mapped over.
+ */
+final class TinyReader {
+    private static final String COUNTER = "# INTERMEDIARY-COUNTER";
+
+    private static final class Member {
+        final String owner, desc, from, to;
+        final boolean method;
+
+        Member(String owner, String desc, String from, String to, boolean method) {
+            this.owner = owner;
+            this.desc = desc;
+            this.from = from;
+            this.to = to;
+            this.method = method;
+        }
+    }
+
+    private final File file;
+    private final ByteBuffer buffer;
+    private byte[] line = new byte[256];
+    private int[] columns = new int[8]; //Where each column starts, with one past the end of the line last
+    private int columnCount;
+    private final Map<String, String> pool = new HashMap<>();
+
+    private TinyReader(File file, ByteBuffer buffer) {
+        this.file = file;
+        this.buffer = buffer;
+    }
+
+    static void load(File file, String from, String to, GenMap into, @Nullable Map<String, Integer> counters) throws IOException {
+        //Read onto the heap rather than mapping, as the file is often rewritten straight after
+        new TinyReader(file, ByteBuffer.wrap(Files.readAllBytes(file.toPath()))).read(from, to, into, counters);
+    }
+
+    private boolean nextLine() {
+        if (!buffer.hasRemaining()) return false;
+
+        int start = buffer.position(), end = start;
+        while (end < buffer.limit() && buffer.get(end) != '\n') end++;
+
+        int length = end - start;
+        if (length > 0 && buffer.get(end - 1) == '\r') length--;
+        if (length > line.length) line = new byte[Math.max(length, line.length * 2)];
+
+        buffer.get(line, 0, length);
+        buffer.position(Math.min(end + 1, buffer.limit()));
+
+        columnCount = 0;
+        for (int i = 0; i <= length; i++) {
+            if (i == length || line[i] == '\t') {
+                if (columnCount + 1 >= columns.length) columns = Arrays.copyOf(columns, columns.length * 2);
+                columns[++columnCount] = i + 1;
+            }
+        }
+
+        return true;
+    }
+
+    private boolean startsWith(String prefix) {
+        int length = columns[columnCount] - 1;
+        if (prefix.length() > length) return false;
+
+        for (int i = 0; i < prefix.length(); i++) {
+            if (line[i] != prefix.charAt(i)) return false;
+        }
+
+        return true;
+    }
+
+    private String column(int index) {
+        int start = columns[index];
+        return new String(line, start, columns[index + 1] - 1 - start, StandardCharsets.UTF_8);
+    }
+
+    @Nullable
+    private String name(int index) {
+        if (index < 0 || index >= columnCount || columns[index] == columns[index + 1] - 1) return null;
+        return column(index);
+    }
+
+    private String pooled(int index) {
+        return pool.computeIfAbsent(column(index), k -> k);
+    }
+
+    private void read(String from, String to, GenMap into, @Nullable Map<String, Integer> counters) throws IOException {
+        if (!nextLine() || !startsWith("v1\t")) {
+            throw new IOException("Unsupported mappings format in " + file + ", expected tiny v1");
+        }
+
+        List<String> namespaces = new ArrayList<>();
+        for (int i = 1; i < columnCount; i++) {
+            namespaces.add(column(i));
+        }
+        int fromIndex = namespaces.indexOf(from);
+        int toIndex = namespaces.indexOf(to);
+        boolean loading = fromIndex >= 0 && toIndex >= 0;
+
+        Map<String, String> fromClasses = new HashMap<>();
+        Map<String, String> toClasses = new HashMap<>();
+        List<Member> members = new ArrayList<>();
+
+        while (nextLine()) {
+            if (startsWith("#")) {
+                if (counters != null && startsWith(COUNTER)) {
+                    String[] parts = column(0).split(" ");
+                    counters.put(parts[2], Integer.parseInt(parts[3]));
+                }
+            } else if (loading && startsWith("CLASS\t")) {
+                String name = pooled(1);
+                String fromName = name(1 + fromIndex);
+                String toName = name(1 + toIndex);
+
+                if (fromName != null) fromClasses.put(name, fromName);
+                if (toName != null) toClasses.put(name, toName);
+                if (fromName != null) into.addClass(fromName, toName);
+            } else if (loading && (startsWith("FIELD\t") || startsWith("METHOD\t"))) {
+                String fromName = name(3 + fromIndex);
+                if (fromName == null) continue;
+
+                members.add(new Member(pooled(1), pooled(2), fromName, name(3 + toIndex), line[0] == 'M'));
+            }
+        }
+
+        //The first namespace is what the members were written against, so has nothing to map
+        Remapper fromRemapper = fromIndex > 0 ? new SimpleRemapper(fromClasses) : null;
+        Remapper toRemapper = toIndex > 0 ? new SimpleRemapper(toClasses) : null;
+        Map<String, String> fromDescs = new HashMap<>();
+        Map<String, String> toDescs = new HashMap<>();
+
+        for (Member member : members) {
+            EntryTriple fromEntry = new EntryTriple(mapOwner(fromRemapper, member.owner), member.from, mapDesc(fromRemapper, fromDescs, member.desc));
+            EntryTriple toEntry = member.to == null ? null : new EntryTriple(mapOwner(toRemapper, member.owner), member.to, mapDesc(toRemapper, toDescs, member.desc));
+
+            if (member.method) {
+                into.addMethod(fromEntry, toEntry);
+            } else {
+                into.addField(fromEntry, toEntry);
+            }
+        }
+    }
+
+    private static String mapOwner(@Nullable Remapper remapper, String owner) {
+        String out = remapper != null ? remapper.map(owner) : null;
+        return out != null ? out : owner;
+    }
+
+    private static String mapDesc(@Nullable Remapper remapper, Map<String, String> cache, String desc) {
+        if (remapper == null) return desc;
+
+        return cache.computeIfAbsent(desc, k -> k.charAt(0) == '(' ? remapper.mapMethodDesc(k) : remapper.mapDesc(k));
+    }
+}
@@ -0,0 +1,275 @@
+/*
+ * Copyright (c) 2016, 2017, 2018, 2019 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.stitch.representation;
+
+import org.objectweb.asm.*;
+import org.objectweb.asm.commons.Remapper;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.*;
+import java.util.stream.IntStream;
+
+/**
+ * Every method call made from the code in a jar, indexed both ways: from each method to the
+ * methods it invokes, and from each invoked method back to every method calling it.
+ *
+ * Each distinct method is stored once and referred to by ID, with a call made twice from the
+ * same method being listed twice. Built by {@link JarReader} when asked to index call sites.
+ */
+public final class CallSiteIndex {
+    public static final class MethodRef {
+        private final String owner, name, desc;
+
+        MethodRef(String owner, String name, String desc) {
+            this.owner = owner;
+            this.name = name;
+            this.desc = desc;
+        }
+
+        public String getOwner() {
+            return owner;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getDesc() {
+            return desc;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) return true;
+            if (!(obj instanceof MethodRef)) return false;
+
+            MethodRef other = (MethodRef) obj;
+            return owner.equals(other.owner) && name.equals(other.name) && desc.equals(other.desc);
+        }
+
+        @Override
+        public int hashCode() {
+            return (owner.hashCode() * 31 + name.hashCode()) * 31 + desc.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return owner + '/' + name + desc;
+        }
+    }
+
+    private static final int[] NONE = new int[0];
+
+    private final MethodRef[] methods;
+    private final Map<MethodRef, Integer> ids;
+    private final int[][] calls;
+    private final int[][] callers;
+    private final int callCount;
+
+    private CallSiteIndex(List<MethodRef> methods, Map<MethodRef, Integer> ids, int[][] calls) {
+        this.methods = methods.toArray(new MethodRef[0]);
+        this.ids = ids;
+        this.calls = calls;
+
+        int[] callerCounts = new int[this.methods.length];
+        int callCount = 0;
+        for (int[] targets : calls) {
+            for (int target : targets) {
+                callerCounts[target]++;
+            }
+
+            callCount += targets.length;
+        }
+        this.callCount = callCount;
+
+        callers = new int[this.methods.length][];
+        for (int i = 0; i < callers.length; i++) {
+            callers[i] = callerCounts[i] == 0 ? NONE : new int[callerCounts[i]];
+        }
+
+        Arrays.fill(callerCounts, 0);
+        for (int caller = 0; caller < calls.length; caller++) {
+            for (int target : calls[caller]) {
+                callers[target][callerCounts[target]++] = caller;
+            }
+        }
+    }
+
+    static CallSiteIndex read(JarRootEntry jar) throws IOException {
+        List<MappedJar.Entry> classEntries = new ArrayList<>();
+        for (MappedJar.Entry entry : new MappedJar(jar.file).getEntries()) {
+            if (entry.getName().endsWith(".class")) {
+                classEntries.add(entry);
+            }
+        }
+
+        //Each class is read on its own, with the IDs only handed out afterwards in jar order to stay deterministic
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        List<MethodRef[]>[] classCalls = new List[classEntries.size()];
+
+        try {
+            IntStream.range(0, classCalls.length).parallel().forEach(i -> {
+                try {
+                    classCalls[i] = readCalls(jar.symbols, classEntries.get(i).read());
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Unable to read " + classEntries.get(i).getName() + " from " + jar.file, e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        List<MethodRef> methods = new ArrayList<>();
+        Map<MethodRef, Integer> ids = new HashMap<>();
+        List<int[]> calls = new ArrayList<>();
+
+        for (List<MethodRef[]> methodCalls : classCalls) {
+            for (MethodRef[] call : methodCalls) {
+                int caller = idOf(call[0], methods, ids, calls);
+                int[] targets = new int[call.length - 1];
+
+                for (int i = 1; i < call.length; i++) {
+                    targets[i - 1] = idOf(call[i], methods, ids, calls);
+                }
+
+                calls.set(caller, targets);
+            }
+        }
+
+        return new CallSiteIndex(methods, ids, calls.toArray(new int[0][]));
+    }
+
+    private static int idOf(MethodRef method, List<MethodRef> methods, Map<MethodRef, Integer> ids, List<int[]> calls) {
+        Integer id = ids.get(method);
+
+        if (id == null) {
+            ids.put(method, id = methods.size());
+            methods.add(method);
+            calls.add(NONE);
+        }
+
+        return id;
+    }
+
+    /**
+     * @return Each method in the class with code, followed by every method it calls
+     */
+    private static List<MethodRef[]> readCalls(SymbolTable symbols, byte[] data) {
+        List<MethodRef[]> out = new ArrayList<>();
+
+        new ClassReader(data).accept(new ClassVisitor(Opcodes.ASM7) {
+            private String owner;
+
+            @Override
+            public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
+                owner = symbols.intern(name);
+            }
+
+            @Override
+            public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
+                MethodRef caller = new MethodRef(owner, symbols.intern(name), symbols.intern(descriptor));
+
+                return new MethodVisitor(Opcodes.ASM7) {
+                    private final List<MethodRef> targets = new ArrayList<>();
+
+                    @Override
+                    public void visitMethodInsn(int opcode, String owner, String name, String descriptor, boolean isInterface) {
+                        targets.add(new MethodRef(symbols.intern(owner), symbols.intern(name), symbols.intern(descriptor)));
+                    }
+
+                    @Override
+                    public void visitEnd() {
+                        if (!targets.isEmpty()) {
+                            MethodRef[] call = new MethodRef[targets.size() + 1];
+                            call[0] = caller;
+
+                            for (int i = 0; i < targets.size(); i++) {
+                                call[i + 1] = targets.get(i);
+                            }
+
+                            out.add(call);
+                        }
+                    }
+                };
+            }
+        }, ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+
+        return out;
+    }
+
+    /**
+     * Create a copy of the index with every method remapped
+     */
+    CallSiteIndex remap(Remapper remapper) {
+        List<MethodRef> methods = new ArrayList<>(this.methods.length);
+        Map<MethodRef, Integer> ids = new HashMap<>();
+
+        for (MethodRef method : this.methods) {
+            MethodRef remapped = new MethodRef(remapper.map(method.owner), remapper.mapMethodName(method.owner, method.name, method.desc), remapper.mapMethodDesc(method.desc));
+            ids.putIfAbsent(remapped, methods.size());
+            methods.add(remapped);
+        }
+
+        return new CallSiteIndex(methods, ids, calls);
+    }
+
+    private List<MethodRef> toList(int[] ids) {
+        if (ids.length == 0) return Collections.emptyList();
+
+        List<MethodRef> out = new ArrayList<>(ids.length);
+        for (int id : ids) {
+            out.add(methods[id]);
+        }
+
+        return out;
+    }
+
+    private int idOf(String owner, String name, String desc) {
+        Integer id = ids.get(new MethodRef(owner, name, desc));
+        return id != null ? id : -1;
+    }
+
+    /**
+     * @return The methods called from the given method, in the order it calls them
+     */
+    public List<MethodRef> getCalls(String owner, String name, String desc) {
+        int id = idOf(owner, name, desc);
+        return id >= 0 ? toList(calls[id]) : Collections.emptyList();
+    }
+
+    /**
+     * @return The methods calling the given method, once for each time they call it
+     */
+    public List<MethodRef> getCallers(String owner, String name, String desc) {
+        int id = idOf(owner, name, desc);
+        return id >= 0 ? toList(callers[id]) : Collections.emptyList();
+    }
+
+    public boolean isCalled(String owner, String name, String desc) {
+        int id = idOf(owner, name, desc);
+        return id >= 0 && callers[id].length > 0;
+    }
+
+    public int getMethodCount() {
+        return methods.length;
+    }
+
+    public int getCallCount() {
+        return callCount;
+    }
+}
@@ -0,0 +1,389 @@
+/*
+ * Copyright (c) 2016, 2017, 2018, 2019 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.stitch.representation;
+
+import java.util.*;
+import java.util.stream.IntStream;
+
+/**
+ * Frozen view of a jar's class hierarchy, giving every class an integer ID and storing each
+ * relation as an array of IDs so walking the hierarchy doesn't need any name lookups.
+ *
+ * Only covers the classes in the jar it was built from, anything reached through another
+ * {@link ClassStorage} still goes through the normal name lookups.
+ */
+final class ClassHierarchy {
+    private static final int[] NONE = new int[0];
+
+    private final ClassStorage storage;
+    private final JarClassEntry[] classes;
+    private final int[] superClasses;
+    private final int[][] interfaces;
+    private final int[][] subclasses;
+    private final int[][] implementers;
+    private final int[][] transitiveInterfaces;
+    private final List<JarClassEntry>[] interfaceViews;
+    private final List<JarClassEntry>[] subclassViews;
+    private final List<JarClassEntry>[] implementerViews;
+    private final List<JarClassEntry>[] transitiveInterfaceViews;
+    private final int[] componentIds;
+    private final int[][] components;
+    private final ClassPropagationTree[] trees;
+    private volatile boolean valid = true;
+
+    ClassHierarchy(ClassStorage storage, Collection<JarClassEntry> classes) {
+        this.storage = storage;
+        this.classes = classes.toArray(new JarClassEntry[0]);
+
+        int count = this.classes.length;
+        for (int i = 0; i < count; i++) {
+            this.classes[i].hierarchyId = i;
+        }
+
+        superClasses = new int[count];
+        interfaces = new int[count][];
+        int[] subclassCounts = new int[count];
+        int[] implementerCounts = new int[count];
+
+        //Each class only looks up its own parents, so the lookups can all be done at once
+        IntStream.range(0, count).parallel().forEach(i -> {
+            JarClassEntry entry = this.classes[i];
+
+            superClasses[i] = idOf(entry.superclass);
+            interfaces[i] = idsOf(entry.interfaces);
+        });
+
+        for (int i = 0; i < count; i++) {
+            int superClass = superClasses[i];
+            if (superClass >= 0) subclassCounts[superClass]++;
+
+            for (int itf : interfaces[i]) {
+                implementerCounts[itf]++;
+            }
+        }
+
+        //Children are added in ID order, so each class lists them in the order the classes were read
+        subclasses = allocate(subclassCounts);
+        implementers = allocate(implementerCounts);
+        Arrays.fill(subclassCounts, 0);
+        Arrays.fill(implementerCounts, 0);
+
+        for (int i = 0; i < count; i++) {
+            int superClass = superClasses[i];
+            if (superClass >= 0) subclasses[superClass][subclassCounts[superClass]++] = i;
+
+            for (int itf : interfaces[i]) {
+                implementers[itf][implementerCounts[itf]++] = i;
+            }
+        }
+
+        interfaceViews = views(interfaces);
+        subclassViews = views(subclasses);
+        implementerViews = views(implementers);
+
+        transitiveInterfaces = new int[count][];
+        boolean[] visiting = new boolean[count];
+        int[] marks = new int[count];
+        Arrays.fill(marks, -1);
+
+        for (int i = 0; i < count; i++) {
+            findTransitiveInterfaces(i, visiting, marks);
+        }
+
+        transitiveInterfaceViews = views(transitiveInterfaces);
+
+        componentIds = new int[count];
+        components = findComponents(componentIds);
+        trees = new ClassPropagationTree[components.length];
+    }
+
+    private int[] findTransitiveInterfaces(int id, boolean[] visiting, int[] marks) {
+        if (transitiveInterfaces[id] != null) return transitiveInterfaces[id];
+        if (visiting[id]) return NONE; //Circular hierarchy, which would never load anyway
+        visiting[id] = true;
+
+        int[] direct = interfaces[id];
+        int[][] parents = new int[direct.length + 1][];
+        int limit = direct.length;
+
+        for (int i = 0; i < direct.length; i++) {
+            limit += (parents[i] = findTransitiveInterfaces(direct[i], visiting, marks)).length;
+        }
+
+        int superClass = superClasses[id];
+        limit += (parents[direct.length] = superClass >= 0 ? findTransitiveInterfaces(superClass, visiting, marks) : NONE).length;
+
+        //Every parent is finished by now, so the marks are free to use for this class alone
+        int[] out = new int[limit];
+        int size = 0;
+
+        for (int i = 0; i <= direct.length; i++) {
+            if (i < direct.length && marks[direct[i]] != id) {
+                marks[out[size++] = direct[i]] = id;
+            }
+
+            for (int itf : parents[i]) {
+                if (marks[itf] != id) {
+                    marks[out[size++] = itf] = id;
+                }
+            }
+        }
+
+        visiting[id] = false;
+        return transitiveInterfaces[id] = size == 0 ? NONE : size == limit ? out : Arrays.copyOf(out, size);
+    }
+
+    private int[][] findComponents(int[] componentIds) {
+        int count = classes.length;
+        int[] parents = new int[count];
+        int[] sizes = new int[count];
+
+        for (int i = 0; i < count; i++) {
+            parents[i] = i;
+            sizes[i] = 1;
+        }
+
+        //Subclass and implementer edges are just the other way round, so super and interface edges are enough
+        for (int i = 0; i < count; i++) {
+            if (superClasses[i] >= 0) union(parents, sizes, i, superClasses[i]);
+
+            for (int itf : interfaces[i]) {
+                union(parents, sizes, i, itf);
+            }
+        }
+
+        //Number the components in order of their first class, so the numbering doesn't depend on the union order
+        int[] rootComponents = new int[count];
+        Arrays.fill(rootComponents, -1);
+        int componentCount = 0;
+
+        for (int i = 0; i < count; i++) {
+            int root = find(parents, i);
+            if (rootComponents[root] < 0) rootComponents[root] = componentCount++;
+
+            componentIds[i] = rootComponents[root];
+        }
+
+        int[] componentSizes = new int[componentCount];
+        for (int i = 0; i < count; i++) {
+            componentSizes[componentIds[i]]++;
+        }
+
+        int[][] out = allocate(componentSizes);
+        Arrays.fill(componentSizes, 0);
+
+        for (int i = 0; i < count; i++) {
+            int component = componentIds[i];
+            out[component][componentSizes[component]++] = i;
+        }
+
+        return out;
+    }
+
+    private static int find(int[] parents, int id) {
+        while (parents[id] != id) {
+            id = parents[id] = parents[parents[id]];
+        }
+
+        return id;
+    }
+
+    private static void union(int[] parents, int[] sizes, int a, int b) {
+        a = find(parents, a);
+        b = find(parents, b);
+        if (a == b) return;
+
+        if (sizes[a] < sizes[b]) {
+            int temp = a;
+            a = b;
+            b = temp;
+        }
+
+        parents[b] = a;
+        sizes[a] += sizes[b];
+    }
+
+    private int idOf(String name) {
+        JarClassEntry entry = storage.getClass(name, false);
+        if (entry == null) return -1;
+
+        int id = entry.hierarchyId;
+        return id >= 0 && id < classes.length && classes[id] == entry ? id : -1;
+    }
+
+    private int[] idsOf(List<String> names) {
+        if (names == null || names.isEmpty()) return NONE;
+
+        int[] out = new int[names.size()];
+        int size = 0;
+
+        for (String name : names) {
+            int id = idOf(name);
+            if (id >= 0) out[size++] = id;
+        }
+
+        return size == out.length ? out : Arrays.copyOf(out, size);
+    }
+
+    private static int[][] allocate(int[] counts) {
+        int[][] out = new int[counts.length][];
+
+        for (int i = 0; i < counts.length; i++) {
+            out[i] = counts[i] == 0 ? NONE : new int[counts[i]];
+        }
+
+        return out;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private List<JarClassEntry>[] views(int[][] ids) {
+        List<JarClassEntry>[] out = new List[ids.length];
+
+        for (int i = 0; i < ids.length; i++) {
+            out[i] = ids[i].length == 0 ? Collections.emptyList() : new ClassList(ids[i]);
+        }
+
+        return out;
+    }
+
+    private final class ClassList extends AbstractList<JarClassEntry> implements RandomAccess {
+        private final int[] ids;
+
+        ClassList(int[] ids) {
+            this.ids = ids;
+        }
+
+        @Override
+        public JarClassEntry get(int index) {
+            return classes[ids[index]];
+        }
+
+        @Override
+        public int size() {
+            return ids.length;
+        }
+    }
+
+    /**
+     * Add the names of every direct subclass and implementer of the given class to its own lists
+     */
+    void populateChildren(int id) {
+        JarClassEntry entry = classes[id];
+
+        for (int subclass : subclasses[id]) {
+            entry.subclasses.add(classes[subclass].fullyQualifiedName);
+        }
+
+        for (int implementer : implementers[id]) {
+            entry.implementers.add(classes[implementer].fullyQualifiedName);
+        }
+    }
+
+    boolean covers(ClassStorage storage) {
+        return valid && this.storage == storage;
+    }
+
+    void invalidate() {
+        valid = false;
+    }
+
+    int size() {
+        return classes.length;
+    }
+
+    JarClassEntry getClass(int id) {
+        return classes[id];
+    }
+
+    int getSuperClassId(int id) {
+        return superClasses[id];
+    }
+
+    int[] getInterfaceIds(int id) {
+        return interfaces[id];
+    }
+
+    int[] getSubclassIds(int id) {
+        return subclasses[id];
+    }
+
+    int[] getImplementerIds(int id) {
+        return implementers[id];
+    }
+
+    JarClassEntry getSuperClass(int id) {
+        int superClass = superClasses[id];
+        return superClass >= 0 ? classes[superClass] : null;
+    }
+
+    List<JarClassEntry> getInterfaces(int id) {
+        return interfaceViews[id];
+    }
+
+    /**
+     * @return Every interface the class implements directly, through its interfaces, or through its super classes, each only once
+     */
+    List<JarClassEntry> getTransitiveInterfaces(int id) {
+        return transitiveInterfaceViews[id];
+    }
+
+    List<JarClassEntry> getSubclasses(int id) {
+        return subclassViews[id];
+    }
+
+    List<JarClassEntry> getImplementers(int id) {
+        return implementerViews[id];
+    }
+
+    int getComponentCount() {
+        return components.length;
+    }
+
+    int getComponentId(int id) {
+        return componentIds[id];
+    }
+
+    /**
+     * @return The IDs of every class connected to the given component through their hierarchies, in ID order
+     */
+    int[] getComponent(int component) {
+        return components[component];
+    }
+
+    ClassPropagationTree getTree(int component) {
+        ClassPropagationTree tree = trees[component];
+
+        if (tree == null) {
+            //Trees are immutable, so building the same one twice from different threads is harmless
+            int[] ids = components[component];
+            List<JarClassEntry> classes = new ArrayList<>(ids.length);
+            List<JarClassEntry> topmostClasses = new ArrayList<>();
+
+            for (int id : ids) {
+                classes.add(this.classes[id]);
+
+                if (subclasses[id].length == 0 && implementers[id].length == 0) {
+                    topmostClasses.add(this.classes[id]);
+                }
+            }
+
+            trees[component] = tree = new ClassPropagationTree(classes, topmostClasses);
+        }
+
+        return tree;
+    }
+}
@@ -26,14 +26,20 @@ import java.util.*;
  * where it could get away with naming them differently.
  */
 public class ClassPropagationTree {
-    private final ClassStorage jar;
-    private final Set<JarClassEntry> relevantClasses;
-    private final Set<JarClassEntry> topmostClasses;
+    private final Collection<JarClassEntry> relevantClasses;
+    private final Collection<JarClassEntry> topmostClasses;
 
     public ClassPropagationTree(ClassStorage jar, JarClassEntry baseClass) {
-        this.jar = jar;
-        relevantClasses = StitchUtil.newIdentityHashSet();
-        topmostClasses = StitchUtil.newIdentityHashSet();
+        ClassPropagationTree shared = getShared(jar, baseClass);
+
+        if (shared != null) {
+            relevantClasses = shared.relevantClasses;
+            topmostClasses = shared.topmostClasses;
+            return;
+        }
+
+        Set<JarClassEntry> relevantClasses = StitchUtil.newIdentityHashSet();
+        Set<JarClassEntry> topmostClasses = StitchUtil.newIdentityHashSet();
 
         LinkedList<JarClassEntry> queue = new LinkedList<>();
         queue.add(baseClass);
@@ -58,13 +64,40 @@ public class ClassPropagationTree {
                 queue.add(superClass);
             }
         }
+
+        this.relevantClasses = Collections.unmodifiableSet(relevantClasses);
+        this.topmostClasses = Collections.unmodifiableSet(topmostClasses);
+    }
+
+    ClassPropagationTree(List<JarClassEntry> relevantClasses, List<JarClassEntry> topmostClasses) {
+        this.relevantClasses = Collections.unmodifiableList(relevantClasses);
+        this.topmostClasses = Collections.unmodifiableList(topmostClasses);
+    }
+
+    /**
+     * Get the tree for the given class, which will be shared with every class connected to it
+     * whenever the storage's hierarchy has been frozen.
+     */
+    public static ClassPropagationTree of(ClassStorage jar, JarClassEntry baseClass) {
+        ClassPropagationTree shared = getShared(jar, baseClass);
+        return shared != null ? shared : new ClassPropagationTree(jar, baseClass);
+    }
+
+    private static ClassPropagationTree getShared(ClassStorage jar, JarClassEntry baseClass) {
+        ClassHierarchy hierarchy = baseClass != null ? baseClass.hierarchy : null;
+
+        if (hierarchy != null && hierarchy.covers(jar)) {
+            return hierarchy.getTree(hierarchy.getComponentId(baseClass.hierarchyId));
+        }
+
+        return null;
     }
 
     public Collection<JarClassEntry> getClasses() {
-        return Collections.unmodifiableSet(relevantClasses);
+        return relevantClasses;
     }
 
     public Collection<JarClassEntry> getTopmostClasses() {
-        return Collections.unmodifiableSet(topmostClasses);
+        return topmostClasses;
     }
 }
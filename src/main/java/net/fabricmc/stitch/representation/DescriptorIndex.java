@@ -0,0 +1,209 @@
+/*
+ * Copyright (c) 2016, 2017, 2018, 2019 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.stitch.representation;
+
+import org.objectweb.asm.Type;
+import org.objectweb.asm.commons.Remapper;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+/**
+ * Every field and method descriptor seen, each taken apart only once into the classes it refers to.
+ *
+ * Each class referenced gets an ID, and each descriptor stores the IDs of the classes it uses in
+ * order along with where their names are, so they can be checked or remapped without parsing the
+ * descriptor again. Descriptors are parsed the first time they are asked for. Safe to share between
+ * threads.
+ */
+public final class DescriptorIndex {
+    private static final int[] NONE = new int[0];
+
+    public final class Descriptor {
+        private final String descriptor;
+        private final int[] classIds;
+        private final int[] nameStarts; //Each name runs up to the next ;
+        private volatile Type[] argumentTypes;
+        private volatile Type returnType;
+
+        Descriptor(String descriptor, int[] classIds, int[] nameStarts) {
+            this.descriptor = descriptor;
+            this.classIds = classIds;
+            this.nameStarts = nameStarts;
+        }
+
+        public String getDescriptor() {
+            return descriptor;
+        }
+
+        /**
+         * @return How many classes the descriptor refers to, including array element types
+         */
+        public int getClassCount() {
+            return classIds.length;
+        }
+
+        public int getClassId(int index) {
+            return classIds[index];
+        }
+
+        public String getClassName(int index) {
+            return DescriptorIndex.this.getClassName(classIds[index]);
+        }
+
+        public boolean allClassesMatch(Predicate<String> test) {
+            for (int id : classIds) {
+                if (!test.test(DescriptorIndex.this.getClassName(id))) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+
+        /**
+         * @return The descriptor with every class in it mapped, giving the same as {@link Remapper#mapDesc(String)}
+         * or {@link Remapper#mapMethodDesc(String)} would
+         */
+        public String remap(Remapper remapper) {
+            StringBuilder out = null;
+            int last = 0;
+
+            for (int i = 0; i < classIds.length; i++) {
+                String name = getClassName(i);
+                String mapped = remapper.map(name);
+
+                if (mapped != null && !mapped.equals(name)) {
+                    if (out == null) out = new StringBuilder(descriptor.length() + 16);
+
+                    out.append(descriptor, last, nameStarts[i]).append(mapped);
+                    last = nameStarts[i] + name.length();
+                }
+            }
+
+            return out != null ? out.append(descriptor, last, descriptor.length()).toString() : descriptor;
+        }
+
+        /**
+         * @return The argument types of a method descriptor, which is shared so mustn't be modified
+         */
+        public Type[] getArgumentTypes() {
+            Type[] out = argumentTypes;
+
+            if (out == null) {
+                argumentTypes = out = Type.getArgumentTypes(descriptor);
+            }
+
+            return out;
+        }
+
+        public Type getReturnType() {
+            Type out = returnType;
+
+            if (out == null) {
+                returnType = out = Type.getReturnType(descriptor);
+            }
+
+            return out;
+        }
+
+        @Override
+        public String toString() {
+            return descriptor;
+        }
+    }
+
+    private final Map<String, Descriptor> descriptors = new ConcurrentHashMap<>();
+    private final Map<String, Integer> classIds = new ConcurrentHashMap<>();
+    private volatile String[] classNames = new String[64];
+    private int classCount;
+
+    public Descriptor get(String descriptor) {
+        Descriptor out = descriptors.get(descriptor);
+
+        if (out == null) {
+            out = parse(descriptor);
+
+            Descriptor existing = descriptors.putIfAbsent(descriptor, out);
+            if (existing != null) out = existing;
+        }
+
+        return out;
+    }
+
+    private Descriptor parse(String descriptor) {
+        int[] ids = NONE;
+        int[] starts = NONE;
+        int count = 0;
+
+        for (int i = 0; i < descriptor.length(); i++) {
+            if (descriptor.charAt(i) == 'L') {
+                int end = descriptor.indexOf(';', i);
+                if (end < 0) throw new IllegalArgumentException("Invalid descriptor: " + descriptor);
+
+                if (count == ids.length) {
+                    ids = Arrays.copyOf(ids, count + 4);
+                    starts = Arrays.copyOf(starts, count + 4);
+                }
+
+                ids[count] = idOf(descriptor.substring(i + 1, end));
+                starts[count++] = i + 1;
+                i = end;
+            }
+        }
+
+        return new Descriptor(descriptor, count == ids.length ? ids : Arrays.copyOf(ids, count), count == starts.length ? starts : Arrays.copyOf(starts, count));
+    }
+
+    private int idOf(String name) {
+        Integer id = classIds.get(name);
+        if (id != null) return id;
+
+        synchronized (this) {
+            id = classIds.get(name);
+            if (id != null) return id;
+
+            String[] names = classNames;
+            if (classCount == names.length) {
+                classNames = names = Arrays.copyOf(names, classCount * 2);
+            }
+
+            //The name is in place before anything can be given its ID
+            names[classCount] = name;
+            classIds.put(name, classCount);
+            return classCount++;
+        }
+    }
+
+    /**
+     * @return The ID the given class has, or -1 if no descriptor has referred to it yet
+     */
+    public int getClassId(String name) {
+        Integer id = classIds.get(name);
+        return id != null ? id : -1;
+    }
+
+    public String getClassName(int id) {
+        return classNames[id];
+    }
+
+    public int size() {
+        return descriptors.size();
+    }
+}
@@ -17,9 +17,10 @@
 package net.fabricmc.stitch.representation;
 
 import net.fabricmc.stitch.util.Pair;
-import org.objectweb.asm.commons.Remapper;
+import net.fabricmc.stitch.util.StitchUtil;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.stream.Collectors;
 
 public class JarClassEntry extends AbstractJarEntry {
@@ -35,13 +36,17 @@ public class JarClassEntry extends AbstractJarEntry {
     List<String> subclasses;
     List<String> implementers;
 
+    ClassHierarchy hierarchy;
+    int hierarchyId = -1;
+    private volatile LazyMembers lazyMembers;
+
     protected JarClassEntry(String name, String fullyQualifiedName) {
         super(name);
 
         this.fullyQualifiedName = fullyQualifiedName;
-        this.innerClasses = new TreeMap<>(Comparator.naturalOrder());
-        this.fields = new TreeMap<>(Comparator.naturalOrder());
-        this.methods = new TreeMap<>(Comparator.naturalOrder());
+        this.innerClasses = new ConcurrentSkipListMap<>(Comparator.naturalOrder());
+        this.fields = new MemberMap<>();
+        this.methods = new MemberMap<>();
         this.relatedMethods = new HashMap<>();
 
         this.subclasses = new ArrayList<>();
@@ -55,15 +60,19 @@ public class JarClassEntry extends AbstractJarEntry {
         this.interfaces = Arrays.asList(interfaces);
     }
 
-    protected void populateParents(ClassStorage storage) {
-        JarClassEntry superEntry = getSuperClass(storage);
-        if (superEntry != null) {
-            superEntry.subclasses.add(fullyQualifiedName);
-        }
+    void setLazyMembers(LazyMembers members) {
+        lazyMembers = members;
+    }
 
-        for (JarClassEntry itf : getInterfaces(storage)) {
-            if (itf != null) {
-                itf.implementers.add(fullyQualifiedName);
+    void readMembers() {
+        if (lazyMembers != null) {
+            synchronized (this) {
+                LazyMembers members = lazyMembers;
+
+                if (members != null) {
+                    members.readInto(this);
+                    lazyMembers = null;
+                }
             }
         }
     }
@@ -85,7 +94,16 @@ public class JarClassEntry extends AbstractJarEntry {
         return superclass;
     }
 
+    private boolean inHierarchy(ClassStorage storage) {
+        ClassHierarchy hierarchy = this.hierarchy;
+        return hierarchy != null && hierarchy.covers(storage);
+    }
+
     public JarClassEntry getSuperClass(ClassStorage storage) {
+        if (inHierarchy(storage)) {
+            return hierarchy.getSuperClass(hierarchyId);
+        }
+
         return storage.getClass(superclass, false);
     }
 
@@ -94,11 +112,15 @@ public class JarClassEntry extends AbstractJarEntry {
     }
 
     public List<JarClassEntry> getInterfaces(ClassStorage storage) {
+        if (inHierarchy(storage)) {
+            return hierarchy.getInterfaces(hierarchyId);
+        }
+
         return toClassEntryList(storage, interfaces);
     }
 
     public List<JarClassEntry> getAllInterfaces(ClassStorage storage) {
-    	List<JarClassEntry> interfaces = getInterfaces(storage);
+    	List<JarClassEntry> interfaces = new ArrayList<>(getInterfaces(storage));
 
     	JarClassEntry superClass = getSuperClass(storage);
     	if (superClass != null) {
@@ -108,11 +130,52 @@ public class JarClassEntry extends AbstractJarEntry {
     	return interfaces;
     }
 
+    /**
+     * @return Every interface the class implements directly, through its interfaces, or through its super classes, each only once
+     */
+    public List<JarClassEntry> getTransitiveInterfaces(ClassStorage storage) {
+        if (inHierarchy(storage)) {
+            return hierarchy.getTransitiveInterfaces(hierarchyId);
+        }
+
+        if (storage instanceof LayeredClassStorage) {
+            return ((LayeredClassStorage) storage).getTransitiveInterfaces(this);
+        }
+
+        return findTransitiveInterfaces(storage);
+    }
+
+    List<JarClassEntry> findTransitiveInterfaces(ClassStorage storage) {
+        List<JarClassEntry> out = new ArrayList<>();
+        Set<JarClassEntry> seen = StitchUtil.newIdentityHashSet();
+
+        for (JarClassEntry itf : getInterfaces(storage)) {
+            if (seen.add(itf)) out.add(itf);
+
+            for (JarClassEntry parent : itf.getTransitiveInterfaces(storage)) {
+                if (seen.add(parent)) out.add(parent);
+            }
+        }
+
+        JarClassEntry superClass = getSuperClass(storage);
+        if (superClass != null) {
+            for (JarClassEntry parent : superClass.getTransitiveInterfaces(storage)) {
+                if (seen.add(parent)) out.add(parent);
+            }
+        }
+
+        return out.isEmpty() ? Collections.emptyList() : Collections.unmodifiableList(out);
+    }
+
     public List<String> getSubclassNames() {
         return Collections.unmodifiableList(subclasses);
     }
 
     public List<JarClassEntry> getSubclasses(ClassStorage storage) {
+        if (inHierarchy(storage)) {
+            return hierarchy.getSubclasses(hierarchyId);
+        }
+
         return toClassEntryList(storage, subclasses);
     }
 
@@ -121,6 +184,10 @@ public class JarClassEntry extends AbstractJarEntry {
     }
 
     public List<JarClassEntry> getImplementers(ClassStorage storage) {
+        if (inHierarchy(storage)) {
+            return hierarchy.getImplementers(hierarchyId);
+        }
+
         return toClassEntryList(storage, implementers);
     }
 
@@ -140,10 +207,12 @@ public class JarClassEntry extends AbstractJarEntry {
     }
 
     public JarFieldEntry getField(String name) {
+        readMembers();
         return fields.get(name);
     }
 
     public JarMethodEntry getMethod(String name) {
+        readMembers();
         return methods.get(name);
     }
 
@@ -152,10 +221,12 @@ public class JarClassEntry extends AbstractJarEntry {
     }
 
     public Collection<JarFieldEntry> getFields() {
+        readMembers();
         return fields.values();
     }
 
     public Collection<JarMethodEntry> getMethods() {
+        readMembers();
         return methods.values();
     }
 
@@ -171,52 +242,4 @@ public class JarClassEntry extends AbstractJarEntry {
     public String getKey() {
         return getFullyQualifiedName();
     }
-
-    public void remap(Remapper remapper) {
-        String oldName = fullyQualifiedName;
-        fullyQualifiedName = remapper.map(fullyQualifiedName);
-        String[] s = fullyQualifiedName.split("\\$");
-        name = s[s.length - 1];
-
-        if (superclass != null) {
-            superclass = remapper.map(superclass);
-        }
-
-        interfaces = interfaces.stream().map(remapper::map).collect(Collectors.toList());
-        subclasses = subclasses.stream().map(remapper::map).collect(Collectors.toList());
-        implementers = implementers.stream().map(remapper::map).collect(Collectors.toList());
-
-        Map<String, JarClassEntry> innerClassOld = new HashMap<>(innerClasses);
-        Map<String, JarFieldEntry> fieldsOld = new HashMap<>(fields);
-        Map<String, JarMethodEntry> methodsOld = new HashMap<>(methods);
-        Map<String, String> methodKeyRemaps = new HashMap<>();
-
-        innerClasses.clear();
-        fields.clear();
-        methods.clear();
-
-        for (Map.Entry<String, JarClassEntry> entry : innerClassOld.entrySet()) {
-            entry.getValue().remap(remapper);
-            innerClasses.put(entry.getValue().name, entry.getValue());
-        }
-
-        for (Map.Entry<String, JarFieldEntry> entry : fieldsOld.entrySet()) {
-            entry.getValue().remap(this, oldName, remapper);
-            fields.put(entry.getValue().getKey(), entry.getValue());
-        }
-
-        for (Map.Entry<String, JarMethodEntry> entry : methodsOld.entrySet()) {
-            entry.getValue().remap(this, oldName, remapper);
-            methods.put(entry.getValue().getKey(), entry.getValue());
-            methodKeyRemaps.put(entry.getKey(), entry.getValue().getKey());
-        }
-
-        // TODO: remap relatedMethods strings???
-        Map<String, Set<Pair<JarClassEntry, String>>> relatedMethodsOld = new HashMap<>(relatedMethods);
-        relatedMethods.clear();
-
-        for (Map.Entry<String, Set<Pair<JarClassEntry, String>>> entry : relatedMethodsOld.entrySet()) {
-            relatedMethods.put(methodKeyRemaps.getOrDefault(entry.getKey(), entry.getKey()), entry.getValue());
-        }
-    }
 }
@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2016, 2017, 2018, 2019 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.stitch.representation;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Which classes differ between two versions of a jar, going by the CRC and size each class file has
+ * in the jars' central directories. Neither jar's classes need reading to tell.
+ *
+ * Classes are given by their internal names, sorted.
+ */
+public final class JarDiff {
+    private final Set<String> unchanged = new TreeSet<>();
+    private final Set<String> changed = new TreeSet<>();
+    private final Set<String> added = new TreeSet<>();
+    private final Set<String> removed = new TreeSet<>();
+
+    private JarDiff() {
+    }
+
+    public static JarDiff between(File oldJar, File newJar) throws IOException {
+        return between(new MappedJar(oldJar), new MappedJar(newJar));
+    }
+
+    static JarDiff between(MappedJar oldJar, MappedJar newJar) {
+        Map<String, MappedJar.Entry> oldClasses = new HashMap<>();
+        for (MappedJar.Entry entry : oldJar.getEntries()) {
+            if (entry.getName().endsWith(".class")) {
+                oldClasses.putIfAbsent(entry.getName(), entry);
+            }
+        }
+
+        JarDiff out = new JarDiff();
+        for (MappedJar.Entry entry : newJar.getEntries()) {
+            if (!entry.getName().endsWith(".class")) continue;
+
+            String name = entry.getName().substring(0, entry.getName().length() - 6);
+            MappedJar.Entry old = oldClasses.remove(entry.getName());
+
+            if (old == null) {
+                out.added.add(name);
+            } else if (old.getCrc() == entry.getCrc() && old.getSize() == entry.getSize()) {
+                out.unchanged.add(name);
+            } else {
+                out.changed.add(name);
+            }
+        }
+
+        for (String fileName : oldClasses.keySet()) {
+            out.removed.add(fileName.substring(0, fileName.length() - 6));
+        }
+
+        return out;
+    }
+
+    public boolean isUnchanged(String name) {
+        return unchanged.contains(name);
+    }
+
+    public Set<String> getUnchanged() {
+        return Collections.unmodifiableSet(unchanged);
+    }
+
+    /**
+     * @return The classes in both jars whose class files differ
+     */
+    public Set<String> getChanged() {
+        return Collections.unmodifiableSet(changed);
+    }
+
+    /**
+     * @return The classes only in the new jar
+     */
+    public Set<String> getAdded() {
+        return Collections.unmodifiableSet(added);
+    }
+
+    /**
+     * @return The classes only in the old jar
+     */
+    public Set<String> getRemoved() {
+        return Collections.unmodifiableSet(removed);
+    }
+}
@@ -21,12 +21,22 @@ import org.objectweb.asm.commons.Remapper;
 public class JarFieldEntry extends AbstractJarEntry {
     protected String desc;
     protected String signature;
+    private String key;
 
     JarFieldEntry(int access, String name, String desc, String signature) {
         super(name);
         this.setAccess(access);
         this.desc = desc;
         this.signature = signature;
+        this.key = name + desc;
+    }
+
+    JarFieldEntry(int access, String name, String desc, String signature, SymbolTable symbols) {
+        super(symbols.intern(name));
+        this.setAccess(access);
+        this.desc = symbols.intern(desc);
+        this.signature = symbols.intern(signature);
+        this.key = symbols.memberKey(name, desc);
     }
 
     public String getDescriptor() {
@@ -39,7 +49,7 @@ public class JarFieldEntry extends AbstractJarEntry {
 
     @Override
     protected String getKey() {
-        return super.getKey() + desc;
+        return key;
     }
 
     public void remap(JarClassEntry classEntry, String oldOwner, Remapper remapper) {
@@ -47,5 +57,6 @@ public class JarFieldEntry extends AbstractJarEntry {
 
         name = remapper.mapFieldName(oldOwner, name, pastDesc);
         desc = remapper.mapDesc(pastDesc);
+        key = name + desc;
     }
 }
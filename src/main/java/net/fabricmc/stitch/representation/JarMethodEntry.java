@@ -24,12 +24,22 @@ import java.util.*;
 public class JarMethodEntry extends AbstractJarEntry {
     protected String desc;
     protected String signature;
+    private String key;
 
     protected JarMethodEntry(int access, String name, String desc, String signature) {
         super(name);
         this.setAccess(access);
         this.desc = desc;
         this.signature = signature;
+        this.key = name + desc;
+    }
+
+    JarMethodEntry(int access, String name, String desc, String signature, SymbolTable symbols) {
+        super(symbols.intern(name));
+        this.setAccess(access);
+        this.desc = symbols.intern(desc);
+        this.signature = symbols.intern(signature);
+        this.key = symbols.memberKey(name, desc);
     }
 
     public String getDescriptor() {
@@ -42,7 +52,7 @@ public class JarMethodEntry extends AbstractJarEntry {
 
     @Override
     protected String getKey() {
-        return super.getKey() + desc;
+        return key;
     }
 
     public boolean isSource(ClassStorage storage, JarClassEntry c) {
@@ -50,6 +60,11 @@ public class JarMethodEntry extends AbstractJarEntry {
             return true;
         }
 
+        if (storage instanceof JarRootEntry) {
+            Boolean source = ((JarRootEntry) storage).getMethodFamilies().isSource(c, getKey());
+            if (source != null) return source;
+        }
+
         Set<JarClassEntry> entries = StitchUtil.newIdentityHashSet();
         entries.add(c);
         getMatchingSources(entries, storage, c);
@@ -61,6 +76,11 @@ public class JarMethodEntry extends AbstractJarEntry {
             return Collections.singletonList(c);
         }
 
+        if (storage instanceof JarRootEntry) {
+            List<JarClassEntry> entries = ((JarRootEntry) storage).getMethodFamilies().getMatchingEntries(c, getKey());
+            if (entries != null) return entries;
+        }
+
         Set<JarClassEntry> entries = StitchUtil.newIdentityHashSet();
         Set<JarClassEntry> entriesNew = StitchUtil.newIdentityHashSet();
         entries.add(c);
@@ -122,5 +142,6 @@ public class JarMethodEntry extends AbstractJarEntry {
 
         name = remapper.mapMethodName(oldOwner, name, pastDesc);
         desc = remapper.mapMethodDesc(pastDesc);
+        key = name + desc;
     }
 }
\ No newline at end of file
@@ -16,14 +16,18 @@
 
 package net.fabricmc.stitch.representation;
 
-import net.fabricmc.stitch.util.StitchUtil;
 import org.objectweb.asm.*;
 import org.objectweb.asm.commons.Remapper;
 
-import java.io.FileInputStream;
+import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.util.*;
-import java.util.jar.JarInputStream;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 
 public class JarReader {
     public static class Builder {
@@ -47,6 +51,54 @@ public class JarReader {
             return this;
         }
 
+        /**
+         * Only read each class' fields and methods the first time they are asked for, straight out of the
+         * jar held in memory. Commands which only need the class hierarchy never read any members at all.
+         */
+        public Builder lazyMembers(boolean value) {
+            reader.lazyMembers = value;
+            return this;
+        }
+
+        /**
+         * Join the method entries of each group of connected classes in parallel, which gives the same result as
+         * joining them one after another. Enabled by default.
+         */
+        public Builder parallelJoin(boolean value) {
+            reader.parallelJoin = value;
+            return this;
+        }
+
+        /**
+         * Read the code of every method in the jar to index the calls it makes, see {@link JarRootEntry#getCallSites()}
+         */
+        public Builder indexCallSites(boolean value) {
+            reader.indexCallSites = value;
+            return this;
+        }
+
+        /**
+         * Keep snapshots of read jars in the given directory, loading from them instead of the jar when
+         * one exists. Defaults to the stitch.snapshotCache system property, or no cache if it isn't set.
+         */
+        public Builder withSnapshotCache(File cacheDir) {
+            reader.snapshotCache = cacheDir;
+            return this;
+        }
+
+        /**
+         * Compare the jar with an earlier version of it which has already been read, copying every class
+         * whose class file is unchanged instead of reading it again, see {@link JarReader#getDiff()}.
+         *
+         * Classes are copied from the earlier jar directly if its method entries haven't been joined and
+         * it hasn't been remapped, otherwise from its snapshot if there is one in the snapshot cache.
+         * Without either every class is read as normal, without comparing the jars at all.
+         */
+        public Builder diffAgainst(JarRootEntry previous) {
+            reader.previous = previous;
+            return this;
+        }
+
         public JarReader build() {
             return reader;
         }
@@ -54,24 +106,41 @@ public class JarReader {
 
     private final JarRootEntry jar;
     private boolean joinMethodEntries = true;
+    private boolean lazyMembers;
+    private boolean parallelJoin = true;
+    private boolean indexCallSites;
     private Remapper remapper;
+    private File snapshotCache = getDefaultSnapshotCache();
+    private JarRootEntry previous;
+    private JarDiff diff;
 
     public JarReader(JarRootEntry jar) {
         this.jar = jar;
     }
 
+    private static File getDefaultSnapshotCache() {
+        String dir = System.getProperty("stitch.snapshotCache");
+        return dir != null && !dir.isEmpty() ? new File(dir) : null;
+    }
+
     private class VisitorClass extends ClassVisitor {
+        private final boolean readMembers;
         private JarClassEntry entry;
 
         public VisitorClass(int api, ClassVisitor classVisitor) {
+            this(api, classVisitor, true);
+        }
+
+        public VisitorClass(int api, ClassVisitor classVisitor, boolean readMembers) {
             super(api, classVisitor);
+            this.readMembers = readMembers;
         }
 
         @Override
         public void visit(final int version, final int access, final String name, final String signature,
                           final String superName, final String[] interfaces) {
             this.entry = jar.getClass(name, true);
-            this.entry.populate(access, signature, superName, interfaces);
+            this.entry.populate(access, jar.symbols.intern(signature), jar.symbols.intern(superName), jar.symbols.intern(interfaces));
 
             super.visit(version, access, name, signature, superName, interfaces);
         }
@@ -79,7 +148,11 @@ public class JarReader {
         @Override
         public FieldVisitor visitField(final int access, final String name, final String descriptor,
                                        final String signature, final Object value) {
-            JarFieldEntry field = new JarFieldEntry(access, name, descriptor, signature);
+            if (!readMembers) {
+                return super.visitField(access, name, descriptor, signature, value);
+            }
+
+            JarFieldEntry field = new JarFieldEntry(access, name, descriptor, signature, jar.symbols);
             this.entry.fields.put(field.getKey(), field);
 
             return new VisitorField(api, super.visitField(access, name, descriptor, signature, value),
@@ -89,7 +162,11 @@ public class JarReader {
         @Override
         public MethodVisitor visitMethod(final int access, final String name, final String descriptor,
                                          final String signature, final String[] exceptions) {
-            JarMethodEntry method = new JarMethodEntry(access, name, descriptor, signature);
+            if (!readMembers) {
+                return super.visitMethod(access, name, descriptor, signature, exceptions);
+            }
+
+            JarMethodEntry method = new JarMethodEntry(access, name, descriptor, signature, jar.symbols);
             this.entry.methods.put(method.getKey(), method);
 
             return new VisitorMethod(api, super.visitMethod(access, name, descriptor, signature, exceptions),
@@ -199,77 +276,284 @@ public class JarReader {
         }
     }
 
-    public void apply() throws IOException {
-        // Stage 1: read .JAR class/field/method meta
-        try (FileInputStream fileStream = new FileInputStream(jar.file)) {
-            try (JarInputStream jarStream = new JarInputStream(fileStream)) {
-                java.util.jar.JarEntry entry;
+    private static int join(MethodFamilies families, MethodFamilies.Family family) {
+        List<JarClassEntry> mList = family.getClasses();
+        int joined = 0;
+
+        //The family shares the first declaration which doesn't override anything (in class order), so parents keep their own flags
+        JarMethodEntry m = null, fallback = null;
+        for (JarClassEntry c : mList) {
+            JarMethodEntry value = c.getMethod(family.getKey());
+            if (Access.isPrivateOrStatic(value.getAccess())) continue;
+
+            if (Boolean.TRUE.equals(families.isSource(c, family.getKey()))) {
+                m = value;
+                break;
+            } else if (fallback == null) {
+                fallback = value;
+            }
+        }
+        if (m == null) m = fallback;
+        assert m != null: "Joined " + family.getKey() + " without an inheritable entry in " + mList;
+
+        for (JarClassEntry key : mList) {
+            JarMethodEntry value = key.getMethod(m.getKey());
+            if (value != m) {
+                key.methods.put(m.getKey(), m);
+                joined++;
+            }
+        }
 
-                while ((entry = jarStream.getNextJarEntry()) != null) {
-                    if (!entry.getName().endsWith(".class")) {
-                        continue;
+        return joined;
+    }
+
+    private boolean loadSnapshot(JarSnapshot snapshot) {
+        try {
+            return snapshot.load(jar);
+        } catch (IOException e) {
+            System.err.println("Unable to read snapshot " + snapshot.getFile() + ", reading the jar instead: " + e);
+            return false;
+        }
+    }
+
+    private void readClasses() throws IOException {
+        try (ZipFile zip = new ZipFile(jar.file)) {
+            List<ZipEntry> classEntries = new ArrayList<>();
+
+            for (Enumeration<? extends ZipEntry> it = zip.entries(); it.hasMoreElements();) {
+                ZipEntry entry = it.nextElement();
+
+                if (entry.getName().endsWith(".class")) {
+                    classEntries.add(entry);
+                }
+            }
+
+            try {
+                classEntries.parallelStream().forEach(entry -> {
+                    try (InputStream in = zip.getInputStream(entry)) {
+                        ClassReader reader = new ClassReader(in);
+                        ClassVisitor visitor = new VisitorClass(Opcodes.ASM7, null);
+                        reader.accept(visitor, ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException("Unable to read " + entry.getName() + " from " + jar.file, e);
                     }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
 
-                    ClassReader reader = new ClassReader(jarStream);
-                    ClassVisitor visitor = new VisitorClass(Opcodes.ASM7, null);
+            List<String> readOrder = new ArrayList<>(classEntries.size());
+            for (ZipEntry entry : classEntries) {
+                readOrder.add(entry.getName().substring(0, entry.getName().length() - 6));
+            }
+            jar.sortClasses(readOrder);
+        }
+    }
+
+    private void readClassesLazily() throws IOException {
+        MappedJar mappedJar = new MappedJar(jar.file);
+        List<MappedJar.Entry> classEntries = new ArrayList<>();
+
+        for (MappedJar.Entry entry : mappedJar.getEntries()) {
+            if (entry.getName().endsWith(".class")) {
+                classEntries.add(entry);
+            }
+        }
+
+        try {
+            classEntries.parallelStream().forEach(entry -> {
+                try {
+                    ClassReader reader = new ClassReader(entry.read());
+                    VisitorClass visitor = new VisitorClass(Opcodes.ASM7, null, false);
                     reader.accept(visitor, ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+                    visitor.entry.setLazyMembers(new LazyMembers(entry, jar.symbols));
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Unable to read " + entry.getName() + " from " + jar.file, e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        List<String> readOrder = new ArrayList<>(classEntries.size());
+        for (MappedJar.Entry entry : classEntries) {
+            readOrder.add(entry.getName().substring(0, entry.getName().length() - 6));
+        }
+        jar.sortClasses(readOrder);
+    }
+
+    /**
+     * @return Which classes differ from the jar given to {@link Builder#diffAgainst(JarRootEntry)}, or null
+     * if the jar wasn't compared to anything (including when there was nothing to copy from) or hasn't been read yet
+     */
+    public JarDiff getDiff() {
+        return diff;
+    }
+
+    /**
+     * @return The previous jar's classes as they were declared, or null if they aren't to hand
+     */
+    private JarRootEntry getDiffSource() {
+        if (!previous.modified && !previous.getAllClasses().isEmpty()) {
+            return previous;
+        }
+
+        if (snapshotCache != null) {
+            JarRootEntry source = new JarRootEntry(previous.file);
+
+            try {
+                if (new JarSnapshot(snapshotCache, previous.file).load(source)) {
+                    return source;
                 }
+            } catch (IOException e) {
+                System.err.println("Unable to read snapshot of " + previous.file + ", reading every class instead: " + e);
             }
         }
 
+        return null;
+    }
+
+    private void readClassesDiffed(JarRootEntry source) throws IOException {
+        MappedJar mappedJar = new MappedJar(jar.file);
+        List<MappedJar.Entry> classEntries = new ArrayList<>();
+        List<String> readOrder = new ArrayList<>();
+
+        for (MappedJar.Entry entry : mappedJar.getEntries()) {
+            if (entry.getName().endsWith(".class")) {
+                classEntries.add(entry);
+                readOrder.add(entry.getName().substring(0, entry.getName().length() - 6));
+            }
+        }
+
+        AtomicInteger copied = new AtomicInteger();
+        try {
+            IntStream.range(0, classEntries.size()).parallel().forEach(i -> {
+                MappedJar.Entry entry = classEntries.get(i);
+                JarClassEntry previous = diff.isUnchanged(readOrder.get(i)) ? source.getClass(readOrder.get(i), false) : null;
+
+                //Outer classes which weren't in the jar were never populated, so have nothing to copy
+                if (previous != null && previous.interfaces != null) {
+                    copyClass(previous, entry);
+                    copied.incrementAndGet();
+                    return;
+                }
+
+                try {
+                    ClassReader reader = new ClassReader(entry.read());
+                    VisitorClass visitor = new VisitorClass(Opcodes.ASM7, null, !lazyMembers);
+                    reader.accept(visitor, ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+                    if (lazyMembers) visitor.entry.setLazyMembers(new LazyMembers(entry, jar.symbols));
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Unable to read " + entry.getName() + " from " + jar.file, e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        jar.sortClasses(readOrder);
+        System.err.println("Copied " + copied + " unchanged classes, read " + (classEntries.size() - copied.get()) + '.');
+    }
+
+    private void copyClass(JarClassEntry from, MappedJar.Entry classFile) {
+        SymbolTable symbols = jar.symbols;
+        JarClassEntry entry = jar.getClass(from.getFullyQualifiedName(), true);
+        entry.populate(from.getAccess(), symbols.intern(from.signature), symbols.intern(from.superclass), symbols.intern(from.interfaces.toArray(new String[0])));
+
+        if (lazyMembers) {
+            entry.setLazyMembers(new LazyMembers(classFile, symbols));
+            return;
+        }
+
+        for (JarFieldEntry field : from.getFields()) {
+            JarFieldEntry copy = new JarFieldEntry(field.getAccess(), field.getName(), field.getDescriptor(), field.getSignature(), symbols);
+            entry.fields.put(copy.getKey(), copy);
+        }
+
+        for (JarMethodEntry method : from.getMethods()) {
+            JarMethodEntry copy = new JarMethodEntry(method.getAccess(), method.getName(), method.getDescriptor(), method.getSignature(), symbols);
+            entry.methods.put(copy.getKey(), copy);
+        }
+    }
+
+    public void apply() throws IOException {
+        JarSnapshot snapshot = snapshotCache != null ? new JarSnapshot(snapshotCache, jar.file) : null;
+        JarRootEntry diffSource;
+
+        // Stage 1: read .JAR class/field/method meta
+        if (snapshot != null && loadSnapshot(snapshot)) {
+            System.err.println("Loaded snapshot " + snapshot.getFile().getName() + ".");
+        } else if (previous != null && (diffSource = getDiffSource()) != null) {
+            //Only worth comparing the jars when there is something to copy the unchanged classes from
+            diff = JarDiff.between(previous.file, jar.file);
+            System.err.println("Found " + diff.getChanged().size() + " changed, " + diff.getAdded().size() + " added and "
+                    + diff.getRemoved().size() + " removed classes since " + previous.file.getName() + ".");
+            readClassesDiffed(diffSource);
+        } else if (lazyMembers) {
+            readClassesLazily();
+        } else {
+            readClasses();
+        }
+
         System.err.println("Read " + this.jar.getAllClasses().size() + " (" + this.jar.getClasses().size() + ") classes.");
 
         // Stage 2: find subclasses
-        this.jar.getAllClasses().forEach((c) -> c.populateParents(jar));
+        this.jar.populateParents();
         System.err.println("Populated subclass entries.");
 
+        //Saving would need every class' members read, which a lazy read is trying to avoid
+        if (snapshot != null && !lazyMembers && snapshot.needsSave(joinMethodEntries)) {
+            try {
+                snapshot.save(jar, joinMethodEntries);
+            } catch (IOException e) {
+                System.err.println("Unable to write snapshot to " + snapshot.getFile() + ": " + e);
+            }
+        }
+
         // Stage 3: join identical MethodEntries
         if (joinMethodEntries) {
             System.err.println("Joining MethodEntries...");
-            Set<JarClassEntry> traversedClasses = StitchUtil.newIdentityHashSet();
+            jar.modified = true;
+            jar.clearMembers(); //Joining replaces the method entries
+            MethodFamilies methodFamilies = jar.getMethodFamilies();
+            List<MethodFamilies.Family> families = new ArrayList<>();
+            for (MethodFamilies.Family family : methodFamilies.getFamilies()) {
+                if (family.getClasses().size() > 1) {
+                    families.add(family);
+                }
+            }
 
             int joinedMethods = 1;
-            int uniqueMethods = 0;
-
-            Collection<JarMethodEntry> checkedMethods = StitchUtil.newIdentityHashSet();
-
-            for (JarClassEntry entry : jar.getAllClasses()) {
-                if (traversedClasses.contains(entry)) {
-                    continue;
+            int uniqueMethods = families.size();
+
+            if (parallelJoin) {
+                //Components never share classes, so each one's method maps are only ever written by one thread
+                ClassHierarchy hierarchy = jar.getHierarchy();
+                List<List<MethodFamilies.Family>> components = new ArrayList<>(hierarchy.getComponentCount());
+                for (int i = hierarchy.getComponentCount(); i > 0; i--) {
+                    components.add(new ArrayList<>());
                 }
 
-                ClassPropagationTree tree = new ClassPropagationTree(jar, entry);
-                if (tree.getClasses().size() == 1) {
-                    traversedClasses.add(entry);
-                    continue;
+                for (MethodFamilies.Family family : families) {
+                    components.get(hierarchy.getComponentId(family.getClasses().get(0).hierarchyId)).add(family);
                 }
 
-                for (JarClassEntry c : tree.getClasses()) {
-                    for (JarMethodEntry m : c.getMethods()) {
-                        if (!checkedMethods.add(m)) {
-                            continue;
-                        }
-
-                        // get all matching entries
-                        List<JarClassEntry> mList = m.getMatchingEntries(jar, c);
-
-                        if (mList.size() > 1) {
-                            for (int i = 0; i < mList.size(); i++) {
-                                JarClassEntry key = mList.get(i);
-                                JarMethodEntry value = key.getMethod(m.getKey());
-                                if (value != m) {
-                                    key.methods.put(m.getKey(), m);
-                                    joinedMethods++;
-                                }
-                            }
-                        }
+                joinedMethods += components.parallelStream().mapToInt(component -> {
+                    int joined = 0;
+
+                    for (MethodFamilies.Family family : component) {
+                        joined += join(methodFamilies, family);
                     }
-                }
 
-                traversedClasses.addAll(tree.getClasses());
+                    return joined;
+                }).sum();
+            } else {
+                for (MethodFamilies.Family family : families) {
+                    joinedMethods += join(methodFamilies, family);
+                }
             }
 
-            System.err.println("Joined " + joinedMethods + " MethodEntries (" + uniqueMethods + " unique, " + traversedClasses.size() + " classes).");
+            System.err.println("Joined " + joinedMethods + " MethodEntries (" + uniqueMethods + " unique, " + jar.getAllClasses().size() + " classes).");
         }
 
         System.err.println("Collecting additional information...");
@@ -291,16 +575,16 @@ public class JarReader {
             }
         } */
 
+        if (indexCallSites) {
+            CallSiteIndex callSites = CallSiteIndex.read(jar);
+            jar.setCallSites(callSites);
+            System.err.println("Indexed " + callSites.getCallCount() + " calls between " + callSites.getMethodCount() + " methods.");
+        }
+
         if (remapper != null) {
             System.err.println("Remapping...");
 
-            Map<String, JarClassEntry> classTree = new HashMap<>(jar.classTree);
-            jar.classTree.clear();
-
-            for (Map.Entry<String, JarClassEntry> entry : classTree.entrySet()) {
-                entry.getValue().remap(remapper);
-                jar.classTree.put(entry.getValue().getKey(), entry.getValue());
-            }
+            new JarRemapper(jar, remapper).apply();
         }
 
         System.err.println("- Done. -");
@@ -0,0 +1,165 @@
+/*
+ * Copyright (c) 2016, 2017, 2018, 2019 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.stitch.representation;
+
+import net.fabricmc.stitch.util.Pair;
+import org.objectweb.asm.commons.Remapper;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Remaps every class in a jar in place, working on the classes in parallel.
+ *
+ * Joined methods are shared between every class in their family, so each one is only remapped
+ * once, by the first class in the jar to hold it. The member maps are only rekeyed once every
+ * class and member has its new name, and related method keys are remapped along with them.
+ *
+ * The remapper will be called from several threads at once.
+ */
+final class JarRemapper {
+    private final JarRootEntry jar;
+    private final Remapper remapper;
+    private final List<JarClassEntry> classes;
+    private final Map<JarClassEntry, String> oldNames = new IdentityHashMap<>();
+    private final Map<JarMethodEntry, JarClassEntry> methodOwners = new IdentityHashMap<>();
+
+    JarRemapper(JarRootEntry jar, Remapper remapper) {
+        this.jar = jar;
+        this.remapper = remapper;
+        this.classes = new ArrayList<>(jar.getAllClasses());
+    }
+
+    void apply() {
+        jar.modified = true;
+        classes.parallelStream().forEach(JarClassEntry::readMembers);
+
+        for (JarClassEntry c : classes) {
+            oldNames.put(c, c.getFullyQualifiedName());
+
+            for (JarMethodEntry m : c.methods.values()) {
+                methodOwners.putIfAbsent(m, c);
+            }
+        }
+
+        //Every name has to be remapped before any of the maps keyed by them can be rebuilt
+        classes.parallelStream().forEach(this::remapNames);
+        classes.parallelStream().forEach(c -> c.relatedMethods.replaceAll((key, related) -> remapRelated(related)));
+        classes.parallelStream().forEach(this::rekey);
+
+        List<JarClassEntry> roots = new ArrayList<>(jar.classTree.values());
+        jar.classTree.clear();
+
+        for (JarClassEntry c : roots) {
+            jar.classTree.put(c.getKey(), c);
+        }
+
+        jar.reindexClasses();
+        jar.clearMethodFamilies(); //Keyed by the old names
+        jar.clearMembers();
+
+        CallSiteIndex callSites = jar.getCallSites();
+        if (callSites != null) {
+            jar.setCallSites(callSites.remap(remapper));
+        }
+    }
+
+    private void remapNames(JarClassEntry c) {
+        String oldName = oldNames.get(c);
+        c.fullyQualifiedName = remapper.map(oldName);
+        String[] s = c.fullyQualifiedName.split("\\$");
+        c.name = s[s.length - 1];
+
+        if (c.superclass != null) {
+            c.superclass = remapper.map(c.superclass);
+        }
+
+        c.interfaces = mapNames(c.interfaces);
+        c.subclasses = mapNames(c.subclasses);
+        c.implementers = mapNames(c.implementers);
+
+        for (JarFieldEntry f : c.fields.values()) {
+            f.remap(c, oldName, remapper);
+        }
+
+        for (JarMethodEntry m : c.methods.values()) {
+            if (methodOwners.get(m) == c) {
+                m.remap(c, oldName, remapper);
+            }
+        }
+    }
+
+    private List<String> mapNames(List<String> names) {
+        if (names == null) return null; //Outer classes which weren't in the jar are never populated
+
+        return names.stream().map(remapper::map).collect(Collectors.toList());
+    }
+
+    private Set<Pair<JarClassEntry, String>> remapRelated(Set<Pair<JarClassEntry, String>> related) {
+        Set<Pair<JarClassEntry, String>> out = new HashSet<>();
+
+        for (Pair<JarClassEntry, String> pair : related) {
+            out.add(Pair.of(pair.getLeft(), remapKey(pair.getLeft(), pair.getRight())));
+        }
+
+        return out;
+    }
+
+    private String remapKey(JarClassEntry c, String key) {
+        //Only rekeyed later, so still finds the method under its old key
+        JarMethodEntry m = c.methods.get(key);
+        if (m != null) {
+            return m.getKey();
+        }
+
+        int descStart = key.indexOf('(');
+        if (descStart < 0) {
+            return key;
+        }
+
+        String name = key.substring(0, descStart);
+        String desc = key.substring(descStart);
+        return remapper.mapMethodName(oldNames.getOrDefault(c, c.getFullyQualifiedName()), name, desc) + remapper.mapMethodDesc(desc);
+    }
+
+    private void rekey(JarClassEntry c) {
+        if (!c.relatedMethods.isEmpty()) {
+            List<Map.Entry<String, Set<Pair<JarClassEntry, String>>>> related = new ArrayList<>(c.relatedMethods.entrySet());
+            c.relatedMethods.clear();
+
+            for (Map.Entry<String, Set<Pair<JarClassEntry, String>>> entry : related) {
+                c.relatedMethods.put(remapKey(c, entry.getKey()), entry.getValue());
+            }
+        }
+
+        rekey(c.innerClasses, JarClassEntry::getName);
+        rekey(c.fields, JarFieldEntry::getKey);
+        rekey(c.methods, JarMethodEntry::getKey);
+    }
+
+    private static <T> void rekey(Map<String, T> map, Function<T, String> keyer) {
+        if (map.isEmpty()) return;
+
+        List<T> values = new ArrayList<>(map.values());
+        map.clear();
+
+        for (T value : values) {
+            map.put(keyer.apply(value), value);
+        }
+    }
+}
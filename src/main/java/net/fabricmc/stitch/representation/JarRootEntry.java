@@ -16,20 +16,34 @@
 
 package net.fabricmc.stitch.representation;
 
+import net.fabricmc.stitch.util.StitchUtil;
+
 import java.io.File;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.stream.IntStream;
 
 public class JarRootEntry extends AbstractJarEntry implements ClassStorage {
     final Object syncObject = new Object();
     final File file;
     final Map<String, JarClassEntry> classTree;
+    private final Map<String, JarClassEntry> classIndex; //Every class in the tree by its path through it
     final List<JarClassEntry> allClasses;
+    final SymbolTable symbols = new SymbolTable();
+    private final DescriptorIndex descriptors = new DescriptorIndex();
+    private volatile ClassHierarchy hierarchy;
+    private volatile MethodFamilies methodFamilies;
+    private volatile CallSiteIndex callSites;
+    private volatile MemberIndex members;
+    volatile boolean modified; //Whether method entries have been joined or classes remapped since being read
 
     public JarRootEntry(File file) {
         super(file.getName());
 
         this.file = file;
-        this.classTree = new TreeMap<>(Comparator.naturalOrder());
+        this.classTree = new ConcurrentSkipListMap<>(Comparator.naturalOrder());
+        this.classIndex = new ConcurrentHashMap<>();
         this.allClasses = new ArrayList<>();
     }
 
@@ -39,38 +53,85 @@ public class JarRootEntry extends AbstractJarEntry implements ClassStorage {
             return null;
         }
 
-        String[] nameSplit = name.split("\\$");
-        int i = 0;
-
-        JarClassEntry parent;
-        JarClassEntry entry = classTree.get(nameSplit[i++]);
+        JarClassEntry entry = classIndex.get(canonicalName(name));
         if (entry == null && create) {
-            entry = new JarClassEntry(nameSplit[0], nameSplit[0]);
-            synchronized (syncObject) {
-                allClasses.add(entry);
-                classTree.put(entry.getName(), entry);
-            }
+            entry = createClass(canonicalName(name));
         }
 
-        StringBuilder fullyQualifiedBuilder = new StringBuilder(nameSplit[0]);
+        return entry;
+    }
+
+    private static String canonicalName(String name) {
+        //Trailing empty segments never make it into the tree, the same as how String#split drops them
+        int end = name.length();
+        while (end > 0 && name.charAt(end - 1) == '$') end--;
 
-        while (i < nameSplit.length && entry != null) {
-            fullyQualifiedBuilder.append('$');
-            fullyQualifiedBuilder.append(nameSplit[i]);
+        return end == name.length() ? name : name.substring(0, end);
+    }
+
+    /**
+     * Get or create the class at exactly the given path through the tree, even if it ends in an empty name
+     */
+    JarClassEntry createClass(String name) {
+        synchronized (syncObject) {
+            JarClassEntry entry = classIndex.get(name);
+            if (entry != null) {
+                return entry;
+            }
 
-            parent = entry;
-            entry = entry.getInnerClass(nameSplit[i++]);
+            int split = name.indexOf('$');
+            String outerName = symbols.intern(split >= 0 ? name.substring(0, split) : name);
 
-            if (entry == null && create) {
-                entry = new JarClassEntry(nameSplit[i - 1], fullyQualifiedBuilder.toString());
-                synchronized (syncObject) {
-                    allClasses.add(entry);
+            entry = classTree.get(outerName);
+            if (entry == null) {
+                entry = new JarClassEntry(outerName, outerName);
+                addClass(entry, outerName);
+                classTree.put(entry.getName(), entry);
+            }
+
+            while (split >= 0) {
+                int next = name.indexOf('$', split + 1);
+                String innerName = symbols.intern(next >= 0 ? name.substring(split + 1, next) : name.substring(split + 1));
+
+                JarClassEntry parent = entry;
+                entry = parent.getInnerClass(innerName);
+
+                if (entry == null) {
+                    String fullyQualifiedName = symbols.intern(next >= 0 ? name.substring(0, next) : name);
+                    entry = new JarClassEntry(innerName, fullyQualifiedName);
+                    addClass(entry, fullyQualifiedName);
                     parent.innerClasses.put(entry.getName(), entry);
                 }
+
+                split = next;
             }
+
+            return entry;
         }
+    }
 
-        return entry;
+    private void addClass(JarClassEntry entry, String path) {
+        allClasses.add(entry);
+        classIndex.put(path, entry);
+        onClassAdded();
+    }
+
+    void reindexClasses() {
+        synchronized (syncObject) {
+            classIndex.clear();
+
+            for (JarClassEntry entry : classTree.values()) {
+                reindex(entry, entry.getName());
+            }
+        }
+    }
+
+    private void reindex(JarClassEntry entry, String path) {
+        classIndex.put(path, entry);
+
+        for (JarClassEntry inner : entry.innerClasses.values()) {
+            reindex(inner, path + '$' + inner.getName());
+        }
     }
 
     public Collection<JarClassEntry> getClasses() {
@@ -80,4 +141,129 @@ public class JarRootEntry extends AbstractJarEntry implements ClassStorage {
     public Collection<JarClassEntry> getAllClasses() {
         return Collections.unmodifiableList(allClasses);
     }
+
+    private void onClassAdded() {
+        if (hierarchy != null) {
+            hierarchy.invalidate();
+            hierarchy = null;
+        }
+
+        methodFamilies = null;
+    }
+
+    /**
+     * Freeze the hierarchy, then fill in every class' subclasses and implementers from it
+     */
+    void populateParents() {
+        freezeHierarchy();
+
+        ClassHierarchy hierarchy = this.hierarchy;
+        IntStream.range(0, hierarchy.size()).parallel().forEach(hierarchy::populateChildren);
+    }
+
+    void freezeHierarchy() {
+        ClassHierarchy hierarchy = new ClassHierarchy(this, allClasses);
+
+        for (JarClassEntry entry : allClasses) {
+            entry.hierarchy = hierarchy;
+        }
+
+        synchronized (syncObject) {
+            if (this.hierarchy != null) this.hierarchy.invalidate();
+            this.hierarchy = hierarchy;
+        }
+    }
+
+    ClassHierarchy getHierarchy() {
+        return hierarchy;
+    }
+
+    MethodFamilies getMethodFamilies() {
+        MethodFamilies families = methodFamilies;
+
+        if (families == null) {
+            synchronized (syncObject) {
+                if ((families = methodFamilies) == null) {
+                    methodFamilies = families = new MethodFamilies(this, allClasses);
+                }
+            }
+        }
+
+        return families;
+    }
+
+    void setMethodFamilies(MethodFamilies families) {
+        methodFamilies = families;
+    }
+
+    void clearMethodFamilies() {
+        methodFamilies = null;
+    }
+
+    /**
+     * @return Indexes of every class and member in the jar, built the first time they are needed
+     */
+    public MemberIndex getMembers() {
+        MemberIndex members = this.members;
+
+        if (members == null) {
+            synchronized (syncObject) {
+                if ((members = this.members) == null) {
+                    this.members = members = new MemberIndex(allClasses);
+                }
+            }
+        }
+
+        return members;
+    }
+
+    void clearMembers() {
+        members = null;
+    }
+
+    /**
+     * @return The descriptors of the jar's members, taken apart into the classes they refer to
+     */
+    public DescriptorIndex getDescriptors() {
+        return descriptors;
+    }
+
+    /**
+     * @return The calls made from the code in the jar, or null if the jar was read without indexing them
+     */
+    public CallSiteIndex getCallSites() {
+        return callSites;
+    }
+
+    void setCallSites(CallSiteIndex callSites) {
+        this.callSites = callSites;
+    }
+
+    void sortClasses(List<String> readOrder) {
+        // Put the classes back in the order a sequential read would have created them in
+        List<JarClassEntry> sorted = new ArrayList<>(allClasses.size());
+        Set<JarClassEntry> seen = StitchUtil.newIdentityHashSet();
+
+        for (String name : readOrder) {
+            name = canonicalName(name);
+            int split = -1;
+
+            do {
+                split = name.indexOf('$', split + 1);
+                JarClassEntry entry = classIndex.get(split >= 0 ? name.substring(0, split) : name);
+                if (entry == null) break;
+
+                if (seen.add(entry)) sorted.add(entry);
+            } while (split >= 0);
+        }
+
+        synchronized (syncObject) {
+            for (JarClassEntry entry : allClasses) {
+                if (seen.add(entry)) sorted.add(entry);
+            }
+
+            allClasses.clear();
+            allClasses.addAll(sorted);
+        }
+    }
 }
@@ -0,0 +1,304 @@
+/*
+ * Copyright (c) 2016, 2017, 2018, 2019 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.stitch.representation;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.zip.CRC32;
+
+/**
+ * On-disk copy of everything {@link JarReader} reads out of a jar's bytecode, so the same jar
+ * doesn't need parsing again each time it is passed to a command.
+ *
+ * Snapshots are named after the SHA-256 of the jar they were made from and hold the classes as
+ * they were declared, before any method entries are joined or the jar is remapped. The method
+ * families used to join them can be stored too, in which case they don't need working out again.
+ */
+final class JarSnapshot {
+    private static final int MAGIC = 0x53544A53; //STJS
+    private static final int VERSION = 1;
+    private static final int HASH_LENGTH = 32;
+
+    private final File file;
+    private final byte[] hash;
+    private boolean loaded;
+    private boolean hasFamilies;
+
+    JarSnapshot(File cacheDir, File jar) throws IOException {
+        this.hash = hash(jar);
+
+        StringBuilder name = new StringBuilder(HASH_LENGTH * 2 + 9);
+        for (byte b : hash) {
+            name.append(Character.forDigit((b >> 4) & 0xF, 16));
+            name.append(Character.forDigit(b & 0xF, 16));
+        }
+
+        this.file = new File(cacheDir, name.append(".snapshot").toString());
+    }
+
+    private static byte[] hash(File jar) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+
+        try (InputStream in = new FileInputStream(jar)) {
+            byte[] buffer = new byte[65536];
+            int read;
+
+            while ((read = in.read(buffer)) >= 0) {
+                digest.update(buffer, 0, read);
+            }
+        }
+
+        return digest.digest();
+    }
+
+    File getFile() {
+        return file;
+    }
+
+    boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * @return Whether the snapshot should be written (again) once the jar has been read
+     */
+    boolean needsSave(boolean withFamilies) {
+        return !loaded || withFamilies && !hasFamilies;
+    }
+
+    /**
+     * Fill an empty jar from the snapshot, if there is a valid one for it
+     *
+     * @return Whether the jar was loaded, if not it still needs to be read normally
+     */
+    boolean load(JarRootEntry jar) throws IOException {
+        if (!file.isFile()) {
+            return false;
+        }
+
+        byte[] data = Files.readAllBytes(file.toPath());
+        if (data.length < 8 + HASH_LENGTH + 8) {
+            return false;
+        }
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+        if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+            return false;
+        }
+
+        byte[] storedHash = new byte[HASH_LENGTH];
+        in.readFully(storedHash);
+        if (!Arrays.equals(hash, storedHash)) {
+            return false;
+        }
+
+        //Catch anything which was only partly written before trusting the contents
+        CRC32 crc = new CRC32();
+        crc.update(data, 0, data.length - 8);
+        if (crc.getValue() != ByteBuffer.wrap(data).getLong(data.length - 8)) {
+            return false;
+        }
+
+        String[] strings = new String[in.readInt()];
+        for (int i = 0; i < strings.length; i++) {
+            byte[] bytes = new byte[in.readInt()];
+            in.readFully(bytes);
+            strings[i] = jar.symbols.intern(new String(bytes, StandardCharsets.UTF_8));
+        }
+
+        //Classes are stored in the order they were created in, so recreating them keeps that order
+        JarClassEntry[] classes = new JarClassEntry[in.readInt()];
+        for (int i = 0; i < classes.length; i++) {
+            JarClassEntry entry = classes[i] = jar.createClass(readString(in, strings));
+
+            if (in.readBoolean()) {
+                int access = in.readInt();
+                String signature = readString(in, strings);
+                String superclass = readString(in, strings);
+                String[] interfaces = new String[in.readInt()];
+                for (int j = 0; j < interfaces.length; j++) {
+                    interfaces[j] = readString(in, strings);
+                }
+
+                entry.populate(access, signature, superclass, interfaces);
+            }
+
+            for (int j = in.readInt(); j > 0; j--) {
+                JarFieldEntry field = new JarFieldEntry(in.readInt(), readString(in, strings), readString(in, strings), readString(in, strings), jar.symbols);
+                entry.fields.put(field.getKey(), field);
+            }
+
+            for (int j = in.readInt(); j > 0; j--) {
+                JarMethodEntry method = new JarMethodEntry(in.readInt(), readString(in, strings), readString(in, strings), readString(in, strings), jar.symbols);
+                entry.methods.put(method.getKey(), method);
+            }
+        }
+
+        if (in.readBoolean()) {
+            MethodFamilies families = MethodFamilies.empty(Arrays.asList(classes));
+
+            for (int i = in.readInt(); i > 0; i--) {
+                MethodFamilies.Family family = families.addFamily(readString(in, strings));
+
+                for (int j = in.readInt(); j > 0; j--) {
+                    int member = in.readInt();
+                    families.addDeclaration(family, classes[member >>> 1], (member & 1) != 0);
+                }
+            }
+
+            jar.setMethodFamilies(families);
+            hasFamilies = true;
+        }
+
+        loaded = true;
+        return true;
+    }
+
+    private static String readString(DataInput in, String[] strings) throws IOException {
+        int index = in.readInt();
+        return index >= 0 ? strings[index] : null;
+    }
+
+    /**
+     * Write the jar's current state out, which must be before any method entries have been joined
+     */
+    void save(JarRootEntry jar, boolean withFamilies) throws IOException {
+        List<JarClassEntry> classes = new ArrayList<>(jar.getAllClasses());
+        Map<JarClassEntry, Integer> classIds = new IdentityHashMap<>();
+        for (JarClassEntry entry : classes) {
+            classIds.put(entry, classIds.size());
+        }
+
+        Map<String, Integer> stringIds = new LinkedHashMap<>();
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(body);
+
+        out.writeInt(classes.size());
+        for (JarClassEntry entry : classes) {
+            writeString(out, stringIds, entry.getFullyQualifiedName());
+
+            //Classes only created as the outer class of another won't have been populated
+            out.writeBoolean(entry.interfaces != null);
+            if (entry.interfaces != null) {
+                out.writeInt(entry.getAccess());
+                writeString(out, stringIds, entry.signature);
+                writeString(out, stringIds, entry.superclass);
+                out.writeInt(entry.interfaces.size());
+                for (String itf : entry.interfaces) {
+                    writeString(out, stringIds, itf);
+                }
+            }
+
+            out.writeInt(entry.fields.size());
+            for (JarFieldEntry field : entry.fields.values()) {
+                out.writeInt(field.getAccess());
+                writeString(out, stringIds, field.getName());
+                writeString(out, stringIds, field.getDescriptor());
+                writeString(out, stringIds, field.getSignature());
+            }
+
+            out.writeInt(entry.methods.size());
+            for (JarMethodEntry method : entry.methods.values()) {
+                out.writeInt(method.getAccess());
+                writeString(out, stringIds, method.getName());
+                writeString(out, stringIds, method.getDescriptor());
+                writeString(out, stringIds, method.getSignature());
+            }
+        }
+
+        out.writeBoolean(withFamilies);
+        if (withFamilies) {
+            MethodFamilies families = jar.getMethodFamilies();
+            out.writeInt(families.getFamilies().size());
+
+            for (MethodFamilies.Family family : families.getFamilies()) {
+                writeString(out, stringIds, family.getKey());
+                out.writeInt(family.getClasses().size());
+
+                for (JarClassEntry entry : family.getClasses()) {
+                    boolean inherited = !families.isSource(entry, family.getKey());
+                    out.writeInt(classIds.get(entry) << 1 | (inherited ? 1 : 0));
+                }
+            }
+        }
+
+        out.flush();
+
+        ByteArrayOutputStream data = new ByteArrayOutputStream(body.size() + (stringIds.size() << 5));
+        out = new DataOutputStream(data);
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.write(hash);
+
+        out.writeInt(stringIds.size());
+        for (String s : stringIds.keySet()) {
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+
+        body.writeTo(out);
+        out.flush();
+
+        CRC32 crc = new CRC32();
+        byte[] bytes = data.toByteArray();
+        crc.update(bytes, 0, bytes.length);
+        out.writeLong(crc.getValue());
+        out.flush();
+
+        //Write next to the real file then move it over, so nothing ever sees a half written snapshot
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (!parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Unable to create " + parent);
+        }
+
+        File temp = File.createTempFile(file.getName(), ".tmp", parent);
+        try {
+            try (OutputStream fileOut = new FileOutputStream(temp)) {
+                data.writeTo(fileOut);
+            }
+
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp.toPath());
+        }
+
+        hasFamilies |= withFamilies;
+    }
+
+    private static void writeString(DataOutput out, Map<String, Integer> stringIds, String s) throws IOException {
+        if (s == null) {
+            out.writeInt(-1);
+        } else {
+            Integer id = stringIds.get(s);
+            if (id == null) stringIds.put(s, id = stringIds.size());
+
+            out.writeInt(id);
+        }
+    }
+}
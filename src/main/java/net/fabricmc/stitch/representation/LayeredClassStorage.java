@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2016, 2017, 2018, 2019 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.stitch.representation;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * {@link ClassStorage} made of several others stacked on top of each other, with each class coming
+ * from the first layer which has it. Classes are only ever created in the top layer.
+ *
+ * Normally the jar being worked on sits on top of a {@link LibraryClassResolver} for its libraries
+ * and the JDK, so walks up the hierarchy carry on past the edge of the jar.
+ *
+ * Each class' transitive interfaces are remembered for as long as the storage is around, so the
+ * layers shouldn't be changed whilst it is being used.
+ */
+public class LayeredClassStorage implements ClassStorage {
+    private final ClassStorage[] layers;
+    private final Map<JarClassEntry, List<JarClassEntry>> transitiveInterfaces = new ConcurrentHashMap<>();
+
+    public LayeredClassStorage(ClassStorage top, ClassStorage... below) {
+        layers = new ClassStorage[below.length + 1];
+        layers[0] = top;
+        System.arraycopy(below, 0, layers, 1, below.length);
+    }
+
+    /**
+     * Stack the given jar over its class path, followed by the JDK
+     */
+    public static LayeredClassStorage withClasspath(JarRootEntry jar, File... classpath) throws IOException {
+        return new LayeredClassStorage(jar, new LibraryClassResolver(classpath));
+    }
+
+    @Override
+    public JarClassEntry getClass(String name, boolean create) {
+        for (ClassStorage layer : layers) {
+            JarClassEntry out = layer.getClass(name, false);
+
+            if (out != null) {
+                return out;
+            }
+        }
+
+        return create ? layers[0].getClass(name, true) : null;
+    }
+
+    List<JarClassEntry> getTransitiveInterfaces(JarClassEntry entry) {
+        //Only remember classes the storage would give out itself, rather than anything they shadow
+        if (getClass(entry.getFullyQualifiedName(), false) != entry) {
+            return entry.findTransitiveInterfaces(this);
+        }
+
+        List<JarClassEntry> out = transitiveInterfaces.get(entry);
+
+        if (out == null) {
+            out = entry.findTransitiveInterfaces(this);
+
+            List<JarClassEntry> existing = transitiveInterfaces.putIfAbsent(entry, out);
+            if (existing != null) out = existing;
+        }
+
+        return out;
+    }
+}
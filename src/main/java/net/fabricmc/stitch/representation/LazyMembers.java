@@ -0,0 +1,61 @@
+/*
+ * Copyright (c) 2016, 2017, 2018, 2019 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.stitch.representation;
+
+import org.objectweb.asm.*;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Where to find a class' fields and methods when they weren't read with the rest of the class,
+ * so they can be read the first time they are asked for instead.
+ */
+final class LazyMembers {
+    private final MappedJar.Entry source;
+    private final SymbolTable symbols;
+
+    LazyMembers(MappedJar.Entry source, SymbolTable symbols) {
+        this.source = source;
+        this.symbols = symbols;
+    }
+
+    void readInto(JarClassEntry entry) {
+        byte[] data;
+        try {
+            data = source.read();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to read the members of " + entry.getFullyQualifiedName(), e);
+        }
+
+        new ClassReader(data).accept(new ClassVisitor(Opcodes.ASM7) {
+            @Override
+            public FieldVisitor visitField(int access, String name, String descriptor, String signature, Object value) {
+                JarFieldEntry field = new JarFieldEntry(access, name, descriptor, signature, symbols);
+                entry.fields.put(field.getKey(), field);
+                return null;
+            }
+
+            @Override
+            public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
+                JarMethodEntry method = new JarMethodEntry(access, name, descriptor, signature, symbols);
+                entry.methods.put(method.getKey(), method);
+                return null;
+            }
+        }, ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+    }
+}
@@ -0,0 +1,202 @@
+/*
+ * Copyright (c) 2016, 2017, 2018, 2019 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.stitch.representation;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * {@link ClassStorage} for classes outside of the jar being worked on, handing out a
+ * {@link VirtualJarClassEntry} for each one it can find. Each class is only ever read once,
+ * and the resolver is safe to share between threads: the first thread to ask for a class reads it,
+ * whilst any others asking at the same time wait for its answer.
+ *
+ * Classes are looked for in the given library jars first (in order), then in the running JDK's
+ * modules through the jrt: filesystem, then on the system class path. Asking to create a class
+ * makes no difference, as only classes which can be found are ever returned.
+ *
+ * Library jars are only indexed once a class is first looked for in them, and their classes only
+ * have their place in the hierarchy read until their members are asked for.
+ */
+public class LibraryClassResolver implements ClassStorage {
+    private static final class Library {
+        private final File file;
+        private volatile Map<String, MappedJar.Entry> classFiles;
+
+        Library(File file) {
+            this.file = file;
+        }
+
+        Map<String, MappedJar.Entry> getClassFiles() throws IOException {
+            Map<String, MappedJar.Entry> out = classFiles;
+
+            if (out == null) {
+                synchronized (this) {
+                    if ((out = classFiles) == null) {
+                        out = new HashMap<>();
+
+                        for (MappedJar.Entry entry : new MappedJar(file).getEntries()) {
+                            if (entry.getName().endsWith(".class")) {
+                                out.putIfAbsent(entry.getName(), entry);
+                            }
+                        }
+
+                        classFiles = out;
+                    }
+                }
+            }
+
+            return out;
+        }
+    }
+
+    private final List<Library> libraries = new ArrayList<>();
+    private final SymbolTable symbols = new SymbolTable();
+    private final FileSystem jrt = getJrt();
+    private final Map<String, List<Path>> jrtPackages = new ConcurrentHashMap<>();
+    private final Map<String, FutureTask<JarClassEntry>> classes = new ConcurrentHashMap<>();
+
+    public LibraryClassResolver() {
+    }
+
+    public LibraryClassResolver(File... libraries) throws IOException {
+        for (File library : libraries) {
+            if (!library.isFile()) {
+                throw new FileNotFoundException("Missing library " + library);
+            }
+
+            this.libraries.add(new Library(library));
+        }
+    }
+
+    private static FileSystem getJrt() {
+        try {
+            return FileSystems.getFileSystem(URI.create("jrt:/"));
+        } catch (ProviderNotFoundException | FileSystemNotFoundException e) {
+            return null; //Running on Java 8, everything will come from the class path instead
+        }
+    }
+
+    @Override
+    public JarClassEntry getClass(String name, boolean create) {
+        if (name == null) {
+            return null;
+        }
+
+        FutureTask<JarClassEntry> out = classes.get(name);
+
+        if (out == null) {
+            FutureTask<JarClassEntry> task = new FutureTask<>(() -> {
+                try {
+                    return findClass(name);
+                } catch (IOException e) {
+                    System.err.println("Unable to create virtual class for " + name);
+                    e.printStackTrace();
+                    return null;
+                }
+            });
+
+            //The class is read outside of the map, so only the thread which got its task in first reads it
+            out = classes.putIfAbsent(name, task);
+            if (out == null) {
+                out = task;
+                task.run();
+            }
+        }
+
+        try {
+            return out.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted waiting for " + name, e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw new IllegalStateException("Unable to create virtual class for " + name, cause);
+        }
+    }
+
+    private JarClassEntry findClass(String name) throws IOException {
+        String fileName = name + ".class";
+
+        for (Library library : libraries) {
+            MappedJar.Entry entry = library.getClassFiles().get(fileName);
+
+            if (entry != null) {
+                return new VirtualJarClassEntry(name, entry, symbols);
+            }
+        }
+
+        if (jrt != null) {
+            int split = name.lastIndexOf('/');
+
+            if (split > 0) {
+                for (Path module : getJrtModules(name.substring(0, split))) {
+                    Path path = module.resolve(fileName.substring(split + 1));
+
+                    if (Files.isRegularFile(path)) {
+                        return new VirtualJarClassEntry(name, Files.readAllBytes(path));
+                    }
+                }
+            }
+        }
+
+        try (InputStream in = ClassLoader.getSystemResourceAsStream(fileName)) {
+            if (in == null) {
+                throw new IOException("Class not found: " + name);
+            }
+
+            byte[] data = new byte[8192];
+            int length = 0;
+
+            for (int read; (read = in.read(data, length, data.length - length)) >= 0;) {
+                length += read;
+                if (length == data.length) data = Arrays.copyOf(data, length * 2);
+            }
+
+            return new VirtualJarClassEntry(name, Arrays.copyOf(data, length));
+        }
+    }
+
+    private List<Path> getJrtModules(String packageName) {
+        return jrtPackages.computeIfAbsent(packageName, name -> {
+            //Each package links to the modules it is in
+            Path packagePath = jrt.getPath("/packages", name.replace('/', '.'));
+            if (!Files.isDirectory(packagePath)) return Collections.emptyList();
+
+            List<Path> out = new ArrayList<>();
+            try (DirectoryStream<Path> modules = Files.newDirectoryStream(packagePath)) {
+                for (Path module : modules) {
+                    out.add(jrt.getPath("/modules", module.getFileName().toString(), name));
+                }
+            } catch (IOException e) {
+                return Collections.emptyList();
+            }
+
+            return out;
+        });
+    }
+}
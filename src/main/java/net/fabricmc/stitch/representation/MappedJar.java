@@ -0,0 +1,195 @@
+/*
+ * Copyright (c) 2016, 2017, 2018, 2019 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.stitch.representation;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Read-only view of a jar held in memory, which can read any entry straight from its offset
+ * in the file without keeping the jar open or going through {@link java.util.zip.ZipFile}.
+ *
+ * The whole jar is read onto the heap rather than mapped, so nothing keeps the file locked
+ * once it has been read, however long its entries are held on to. Only the central directory
+ * is parsed up front. ZIP64 jars are not supported.
+ */
+final class MappedJar {
+    private static final int END_HEADER = 0x06054b50;
+    private static final int CENTRAL_HEADER = 0x02014b50;
+    private static final int LOCAL_HEADER = 0x04034b50;
+
+    final class Entry {
+        private final String name;
+        private final int method;
+        private final long crc;
+        private final int compressedSize;
+        private final int size;
+        private final int headerOffset;
+
+        private Entry(String name, int method, long crc, int compressedSize, int size, int headerOffset) {
+            this.name = name;
+            this.method = method;
+            this.crc = crc;
+            this.compressedSize = compressedSize;
+            this.size = size;
+            this.headerOffset = headerOffset;
+        }
+
+        String getName() {
+            return name;
+        }
+
+        long getCrc() {
+            return crc;
+        }
+
+        int getSize() {
+            return size;
+        }
+
+        byte[] read() throws IOException {
+            if (buffer.getInt(headerOffset) != LOCAL_HEADER) {
+                throw new IOException("Missing local header for " + name + " in " + file);
+            }
+
+            //The local header's own sizes might only be in a data descriptor, but the name and extra lengths are always right
+            int start = headerOffset + 30 + (buffer.getShort(headerOffset + 26) & 0xFFFF) + (buffer.getShort(headerOffset + 28) & 0xFFFF);
+            byte[] data = new byte[compressedSize];
+            ByteBuffer slice = buffer.duplicate();
+            slice.position(start);
+            slice.get(data);
+
+            switch (method) {
+                case 0: //Stored
+                    return data;
+
+                case 8: { //Deflated
+                    Inflater inflater = new Inflater(true);
+
+                    try {
+                        inflater.setInput(data);
+                        byte[] out = new byte[size];
+                        int read = 0;
+
+                        while (read < size && !inflater.finished()) {
+                            int last = inflater.inflate(out, read, size - read);
+                            if (last == 0 && (inflater.needsInput() || inflater.needsDictionary())) break;
+                            read += last;
+                        }
+
+                        if (read != size) {
+                            throw new IOException("Truncated entry " + name + " in " + file);
+                        }
+
+                        return out;
+                    } catch (DataFormatException e) {
+                        throw new IOException("Corrupt entry " + name + " in " + file, e);
+                    } finally {
+                        inflater.end();
+                    }
+                }
+
+                default:
+                    throw new IOException("Unsupported compression method " + method + " for " + name + " in " + file);
+            }
+        }
+    }
+
+    private final File file;
+    private final ByteBuffer buffer;
+    private final List<Entry> entries;
+
+    MappedJar(File file) throws IOException {
+        this.file = file;
+
+        buffer = ByteBuffer.wrap(Files.readAllBytes(file.toPath())).order(ByteOrder.LITTLE_ENDIAN);
+        entries = Collections.unmodifiableList(readCentralDirectory());
+    }
+
+    private List<Entry> readCentralDirectory() throws IOException {
+        int end = findEndHeader();
+        int count = buffer.getShort(end + 10) & 0xFFFF;
+        long offset = buffer.getInt(end + 16) & 0xFFFFFFFFL;
+
+        if (count == 0xFFFF || offset == 0xFFFFFFFFL) {
+            throw new IOException(file + " is a ZIP64 file");
+        }
+
+        List<Entry> out = new ArrayList<>(count);
+        int pos = (int) offset;
+
+        for (int i = 0; i < count; i++) {
+            if (pos + 46 > buffer.limit() || buffer.getInt(pos) != CENTRAL_HEADER) {
+                throw new IOException("Corrupt central directory in " + file);
+            }
+
+            int method = buffer.getShort(pos + 10) & 0xFFFF;
+            long crc = buffer.getInt(pos + 16) & 0xFFFFFFFFL;
+            int compressedSize = buffer.getInt(pos + 20);
+            int size = buffer.getInt(pos + 24);
+            int nameLength = buffer.getShort(pos + 28) & 0xFFFF;
+            int extraLength = buffer.getShort(pos + 30) & 0xFFFF;
+            int commentLength = buffer.getShort(pos + 32) & 0xFFFF;
+            int headerOffset = buffer.getInt(pos + 42);
+
+            if (compressedSize < 0 || size < 0 || headerOffset < 0) {
+                throw new IOException(file + " is a ZIP64 file");
+            }
+
+            byte[] name = new byte[nameLength];
+            ByteBuffer slice = buffer.duplicate();
+            slice.position(pos + 46);
+            slice.get(name);
+
+            out.add(new Entry(new String(name, StandardCharsets.UTF_8), method, crc, compressedSize, size, headerOffset));
+            pos += 46 + nameLength + extraLength + commentLength;
+        }
+
+        return out;
+    }
+
+    private int findEndHeader() throws IOException {
+        //The end header is at least 22 bytes, followed by a comment of up to 65535
+        int last = buffer.limit() - 22;
+        int first = Math.max(0, last - 0xFFFF);
+
+        for (int pos = last; pos >= first; pos--) {
+            if (buffer.getInt(pos) == END_HEADER) {
+                return pos;
+            }
+        }
+
+        throw new IOException(file + " is not a zip file");
+    }
+
+    File getFile() {
+        return file;
+    }
+
+    List<Entry> getEntries() {
+        return entries;
+    }
+}
@@ -0,0 +1,273 @@
+/*
+ * Copyright (c) 2016, 2017, 2018, 2019 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.stitch.representation;
+
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Indexes of every class, field and method in a jar by name, descriptor, access flags and package,
+ * so commands can pick out what they are interested in without scanning everything.
+ *
+ * Everything is kept in order of its owner's name, then its own key, which keeps the results of a
+ * query in a fixed order and each package's classes and members next to each other. Built by
+ * {@link JarRootEntry#getMembers()} the first time it is needed, reading any lazily read members.
+ */
+public final class MemberIndex {
+    /**
+     * A field or method along with the class it was found in, as joined methods are shared between classes
+     */
+    public static final class Member<T extends AbstractJarEntry> {
+        private final JarClassEntry owner;
+        private final T entry;
+
+        Member(JarClassEntry owner, T entry) {
+            this.owner = owner;
+            this.entry = entry;
+        }
+
+        public JarClassEntry getOwner() {
+            return owner;
+        }
+
+        public T getEntry() {
+            return entry;
+        }
+
+        @Override
+        public String toString() {
+            return owner.getFullyQualifiedName() + '#' + entry.getKey();
+        }
+    }
+
+    private static final class Table<T> {
+        final List<T> entries;
+        final String[] ownerNames; //Sorted, as the entries are
+        final Map<String, BitSet> byName = new HashMap<>();
+        final Map<String, BitSet> byDescriptor = new HashMap<>();
+        final BitSet[] byAccess = new BitSet[Integer.SIZE];
+
+        Table(List<T> entries, Function<T, String> owner, Function<T, String> name, Function<T, String> descriptor, Function<T, Integer> access) {
+            this.entries = Collections.unmodifiableList(entries);
+            this.ownerNames = new String[entries.size()];
+
+            for (int i = 0; i < entries.size(); i++) {
+                T entry = entries.get(i);
+                ownerNames[i] = owner.apply(entry);
+
+                byName.computeIfAbsent(name.apply(entry), k -> new BitSet()).set(i);
+                if (descriptor != null) byDescriptor.computeIfAbsent(descriptor.apply(entry), k -> new BitSet()).set(i);
+
+                for (int flags = access.apply(entry); flags != 0; flags &= flags - 1) {
+                    int bit = Integer.numberOfTrailingZeros(flags);
+                    if (byAccess[bit] == null) byAccess[bit] = new BitSet();
+                    byAccess[bit].set(i);
+                }
+            }
+        }
+
+        int firstWithPrefix(String prefix) {
+            int low = 0, high = ownerNames.length;
+
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+
+                if (ownerNames[mid].compareTo(prefix) < 0) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+
+            return low;
+        }
+
+        int endOfPrefix(String prefix, int from) {
+            int low = from, high = ownerNames.length;
+
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+
+                if (ownerNames[mid].startsWith(prefix)) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+
+            return low;
+        }
+    }
+
+    /**
+     * Selection of classes or members, narrowed down by each filter added to it
+     */
+    public static final class Query<T> {
+        private final Table<T> table;
+        private BitSet selected; //Null whilst everything in the range is
+        private int from, to;
+
+        Query(Table<T> table) {
+            this.table = table;
+            this.to = table.entries.size();
+        }
+
+        private Query<T> retain(BitSet matches) {
+            if (matches == null) {
+                selected = new BitSet();
+            } else if (selected == null) {
+                selected = (BitSet) matches.clone();
+            } else {
+                selected.and(matches);
+            }
+
+            return this;
+        }
+
+        /**
+         * Only keep anything with the given name, which for classes is their inner-most name
+         */
+        public Query<T> named(String name) {
+            return retain(table.byName.get(name));
+        }
+
+        public Query<T> withDescriptor(String descriptor) {
+            return retain(table.byDescriptor.get(descriptor));
+        }
+
+        /**
+         * Only keep anything with every one of the given access flags
+         */
+        public Query<T> withAccess(int flags) {
+            for (; flags != 0; flags &= flags - 1) {
+                retain(table.byAccess[Integer.numberOfTrailingZeros(flags)]);
+            }
+
+            return this;
+        }
+
+        /**
+         * Only keep anything with none of the given access flags
+         */
+        public Query<T> withoutAccess(int flags) {
+            for (; flags != 0; flags &= flags - 1) {
+                BitSet matches = table.byAccess[Integer.numberOfTrailingZeros(flags)];
+                if (matches == null) continue;
+
+                if (selected == null) {
+                    selected = new BitSet();
+                    selected.set(from, to);
+                }
+
+                selected.andNot(matches);
+            }
+
+            return this;
+        }
+
+        /**
+         * Only keep classes, or members of classes, whose name starts with the given prefix, which includes any subpackages
+         */
+        public Query<T> inPackage(String prefix) {
+            int start = table.firstWithPrefix(prefix);
+            int end = table.endOfPrefix(prefix, start);
+
+            from = Math.max(from, start);
+            to = Math.max(from, Math.min(to, end));
+            return this;
+        }
+
+        public List<T> list() {
+            if (selected == null) {
+                return table.entries.subList(from, to);
+            }
+
+            List<T> out = new ArrayList<>();
+            for (int i = selected.nextSetBit(from); i >= 0 && i < to; i = selected.nextSetBit(i + 1)) {
+                out.add(table.entries.get(i));
+            }
+
+            return out;
+        }
+
+        public int count() {
+            if (selected == null) {
+                return to - from;
+            }
+
+            return selected.get(from, Math.max(from, to)).cardinality();
+        }
+    }
+
+    private final Table<JarClassEntry> classes;
+    private final Table<Member<JarFieldEntry>> fields;
+    private final Table<Member<JarMethodEntry>> methods;
+
+    MemberIndex(Collection<JarClassEntry> allClasses) {
+        List<JarClassEntry> classes = new ArrayList<>(allClasses);
+        classes.sort(Comparator.comparing(JarClassEntry::getFullyQualifiedName));
+
+        List<Member<JarFieldEntry>> fields = new ArrayList<>();
+        List<Member<JarMethodEntry>> methods = new ArrayList<>();
+
+        //Members are already in key order within each class
+        for (JarClassEntry c : classes) {
+            for (JarFieldEntry field : c.getFields()) {
+                fields.add(new Member<>(c, field));
+            }
+
+            for (JarMethodEntry method : c.getMethods()) {
+                methods.add(new Member<>(c, method));
+            }
+        }
+
+        this.classes = new Table<>(classes, JarClassEntry::getFullyQualifiedName, JarClassEntry::getName, null, JarClassEntry::getAccess);
+        this.fields = new Table<>(fields, member -> member.owner.getFullyQualifiedName(), member -> member.entry.getName(), member -> member.entry.getDescriptor(), member -> member.entry.getAccess());
+        this.methods = new Table<>(methods, member -> member.owner.getFullyQualifiedName(), member -> member.entry.getName(), member -> member.entry.getDescriptor(), member -> member.entry.getAccess());
+    }
+
+    /**
+     * @return A new query over every class in the jar, including those only created as outer classes
+     */
+    public Query<JarClassEntry> classes() {
+        return new Query<>(classes);
+    }
+
+    public Query<Member<JarFieldEntry>> fields() {
+        return new Query<>(fields);
+    }
+
+    public Query<Member<JarMethodEntry>> methods() {
+        return new Query<>(methods);
+    }
+
+    /**
+     * @return Each class which owns at least one of the members a query found, in the same order
+     */
+    public static <T extends AbstractJarEntry> List<JarClassEntry> owners(List<Member<T>> members) {
+        List<JarClassEntry> out = new ArrayList<>();
+
+        for (Member<T> member : members) {
+            //Queries keep each owner's members together, so checking the last is enough to catch repeats
+            if (out.isEmpty() || out.get(out.size() - 1) != member.owner) {
+                out.add(member.owner);
+            }
+        }
+
+        return out;
+    }
+}
@@ -0,0 +1,236 @@
+/*
+ * Copyright (c) 2016, 2017, 2018, 2019 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.stitch.representation;
+
+import java.util.*;
+
+/**
+ * Open addressed map of a class' fields or methods by key, which keeps lookups free of the
+ * string comparisons a {@link TreeMap} would make.
+ *
+ * Iteration is still in key order, through a sorted view which is only built when first needed
+ * after the map changes. The view is a snapshot, so changes made while iterating it are not seen.
+ */
+final class MemberMap<V> extends AbstractMap<String, V> {
+    private static final int MIN_CAPACITY = 8;
+
+    private String[] keys;
+    private Object[] values;
+    private int size;
+    private volatile Sorted<V> sorted;
+
+    private static final class Sorted<V> {
+        final String[] keys;
+        final List<V> values;
+
+        Sorted(String[] keys, List<V> values) {
+            this.keys = keys;
+            this.values = values;
+        }
+    }
+
+    private static int hash(Object key) {
+        int h = key.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    private int slot(Object key) {
+        if (keys == null) return -1;
+
+        int mask = keys.length - 1;
+        for (int i = hash(key) & mask; keys[i] != null; i = (i + 1) & mask) {
+            if (keys[i].equals(key)) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return key != null && slot(key) >= 0;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V get(Object key) {
+        if (key == null) return null;
+
+        int slot = slot(key);
+        return slot >= 0 ? (V) values[slot] : null;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V put(String key, V value) {
+        Objects.requireNonNull(key, "key");
+
+        if (keys == null) {
+            keys = new String[MIN_CAPACITY];
+            values = new Object[MIN_CAPACITY];
+        } else if ((size + 1) * 4 > keys.length * 3) {
+            resize(keys.length * 2);
+        }
+
+        int mask = keys.length - 1;
+        int i = hash(key) & mask;
+        for (; keys[i] != null; i = (i + 1) & mask) {
+            if (keys[i].equals(key)) {
+                V old = (V) values[i];
+                values[i] = value;
+                if (old != value) sorted = null;
+                return old;
+            }
+        }
+
+        keys[i] = key;
+        values[i] = value;
+        size++;
+        sorted = null;
+        return null;
+    }
+
+    private void resize(int capacity) {
+        String[] oldKeys = keys;
+        Object[] oldValues = values;
+        keys = new String[capacity];
+        values = new Object[capacity];
+
+        int mask = capacity - 1;
+        for (int j = 0; j < oldKeys.length; j++) {
+            if (oldKeys[j] != null) {
+                int i = hash(oldKeys[j]) & mask;
+                while (keys[i] != null) i = (i + 1) & mask;
+
+                keys[i] = oldKeys[j];
+                values[i] = oldValues[j];
+            }
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V remove(Object key) {
+        if (key == null) return null;
+
+        int slot = slot(key);
+        if (slot < 0) return null;
+
+        V old = (V) values[slot];
+        int mask = keys.length - 1;
+
+        //Shift back any following entries which would no longer be found past the gap
+        for (int gap = slot, i = (slot + 1) & mask; ; i = (i + 1) & mask) {
+            if (keys[i] == null) {
+                keys[gap] = null;
+                values[gap] = null;
+                break;
+            }
+
+            int home = hash(keys[i]) & mask;
+            if (((i - home) & mask) >= ((i - gap) & mask)) {
+                keys[gap] = keys[i];
+                values[gap] = values[i];
+                gap = i;
+            }
+        }
+
+        size--;
+        sorted = null;
+        return old;
+    }
+
+    @Override
+    public void clear() {
+        if (size > 0) {
+            Arrays.fill(keys, null);
+            Arrays.fill(values, null);
+            size = 0;
+            sorted = null;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private Sorted<V> sorted() {
+        Sorted<V> out = sorted;
+
+        if (out == null) {
+            String[] sortedKeys = new String[size];
+            int next = 0;
+            for (int i = 0; size > 0 && i < keys.length; i++) {
+                if (keys[i] != null) sortedKeys[next++] = keys[i];
+            }
+            Arrays.sort(sortedKeys);
+
+            Object[] sortedValues = new Object[size];
+            for (int i = 0; i < sortedKeys.length; i++) {
+                sortedValues[i] = values[slot(sortedKeys[i])];
+            }
+
+            sorted = out = new Sorted<>(sortedKeys, Collections.unmodifiableList((List<V>) Arrays.asList(sortedValues)));
+        }
+
+        return out;
+    }
+
+    /**
+     * @return The values in key order
+     */
+    @Override
+    public Collection<V> values() {
+        return sorted().values;
+    }
+
+    @Override
+    public Set<Entry<String, V>> entrySet() {
+        Sorted<V> sorted = sorted();
+
+        return new AbstractSet<Entry<String, V>>() {
+            @Override
+            public Iterator<Entry<String, V>> iterator() {
+                return new Iterator<Entry<String, V>>() {
+                    private int next;
+
+                    @Override
+                    public boolean hasNext() {
+                        return next < sorted.keys.length;
+                    }
+
+                    @Override
+                    public Entry<String, V> next() {
+                        if (!hasNext()) throw new NoSuchElementException();
+
+                        Entry<String, V> out = new SimpleImmutableEntry<>(sorted.keys[next], sorted.values.get(next));
+                        next++;
+                        return out;
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return sorted.keys.length;
+            }
+        };
+    }
+}
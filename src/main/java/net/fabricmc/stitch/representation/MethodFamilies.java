@@ -0,0 +1,233 @@
+/*
+ * Copyright (c) 2016, 2017, 2018, 2019 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.stitch.representation;
+
+import java.util.*;
+
+/**
+ * Disjoint-set index over every (class, name + descriptor) pair declared in a set of classes.
+ *
+ * Two declarations end up in the same family whenever a class can see both of them through its
+ * hierarchy, which gives the same result as the fixed point {@link JarMethodEntry#getMatchingEntries}
+ * walks towards, but with every family worked out in a single pass over the classes.
+ */
+class MethodFamilies {
+    static final class Family {
+        final String key;
+        final List<JarClassEntry> classes = new ArrayList<>();
+
+        Family(String key) {
+            this.key = key;
+        }
+
+        String getKey() {
+            return key;
+        }
+
+        List<JarClassEntry> getClasses() {
+            return Collections.unmodifiableList(classes);
+        }
+    }
+
+    private static final class Node {
+        Node parent = this;
+        int rank;
+        boolean inherited;
+        Family family;
+    }
+
+    private final Map<JarClassEntry, Map<String, Node>> declarations = new IdentityHashMap<>();
+    private final List<Family> families = new ArrayList<>();
+
+    private MethodFamilies() {
+    }
+
+    /**
+     * Creates an index without any families, which {@link JarSnapshot} then fills back in
+     */
+    static MethodFamilies empty(Collection<JarClassEntry> classes) {
+        MethodFamilies out = new MethodFamilies();
+
+        for (JarClassEntry c : classes) {
+            out.declarations.put(c, new HashMap<>());
+        }
+
+        return out;
+    }
+
+    Family addFamily(String key) {
+        Family family = new Family(key);
+        families.add(family);
+        return family;
+    }
+
+    void addDeclaration(Family family, JarClassEntry c, boolean inherited) {
+        Node node = new Node();
+        node.inherited = inherited;
+        node.family = family;
+
+        declarations.computeIfAbsent(c, k -> new HashMap<>()).put(family.key, node);
+        family.classes.add(c);
+    }
+
+    MethodFamilies(ClassStorage storage, Collection<JarClassEntry> classes) {
+        Map<JarClassEntry, Map<String, Node>> visible = new IdentityHashMap<>();
+
+        for (JarClassEntry c : classes) {
+            findVisible(storage, c, visible);
+        }
+
+        for (JarClassEntry c : classes) {
+            Map<String, Node> declared = declarations.get(c);
+
+            for (Map.Entry<String, Node> entry : declared.entrySet()) {
+                Node root = find(entry.getValue());
+
+                if (root.family == null) {
+                    root.family = new Family(entry.getKey());
+                    families.add(root.family);
+                }
+
+                root.family.classes.add(c);
+            }
+        }
+
+        for (Map<String, Node> declared : declarations.values()) {
+            for (Node node : declared.values()) {
+                node.family = find(node).family;
+            }
+        }
+    }
+
+    private Map<String, Node> findVisible(ClassStorage storage, JarClassEntry c, Map<JarClassEntry, Map<String, Node>> visible) {
+        Map<String, Node> out = visible.get(c);
+        if (out != null) {
+            return out;
+        }
+
+        List<Map<String, Node>> parents = new ArrayList<>();
+        JarClassEntry superClass = c.getSuperClass(storage);
+        if (superClass != null) {
+            parents.add(findVisible(storage, superClass, visible));
+        }
+
+        for (JarClassEntry itf : c.getInterfaces(storage)) {
+            parents.add(findVisible(storage, itf, visible));
+        }
+
+        boolean exposesMethods = false;
+        for (JarMethodEntry m : c.getMethods()) {
+            if (!Access.isPrivateOrStatic(m.getAccess())) {
+                exposesMethods = true;
+                break;
+            }
+        }
+
+        if (parents.size() == 1 && !exposesMethods) {
+            out = parents.get(0); //Nothing will be added, so the parent's view can be shared
+        } else {
+            out = new HashMap<>();
+
+            for (Map<String, Node> parent : parents) {
+                for (Map.Entry<String, Node> entry : parent.entrySet()) {
+                    Node existing = out.putIfAbsent(entry.getKey(), entry.getValue());
+
+                    if (existing != null) {
+                        union(existing, entry.getValue());
+                    }
+                }
+            }
+        }
+
+        Map<String, Node> declared = new HashMap<>();
+        for (JarMethodEntry m : c.getMethods()) {
+            String key = m.getKey();
+            Node node = new Node();
+
+            Node parent = out.get(key);
+            if (parent != null) {
+                node.inherited = true;
+                union(node, parent);
+            }
+
+            if (!Access.isPrivateOrStatic(m.getAccess())) {
+                out.put(key, node);
+            }
+
+            declared.put(key, node);
+        }
+
+        declarations.put(c, declared);
+        visible.put(c, out);
+        return out;
+    }
+
+    private static Node find(Node node) {
+        Node root = node;
+        while (root.parent != root) {
+            root = root.parent;
+        }
+
+        while (node != root) {
+            Node next = node.parent;
+            node.parent = root;
+            node = next;
+        }
+
+        return root;
+    }
+
+    private static void union(Node a, Node b) {
+        a = find(a);
+        b = find(b);
+        if (a == b) return;
+
+        if (a.rank < b.rank) {
+            a.parent = b;
+        } else if (a.rank > b.rank) {
+            b.parent = a;
+        } else {
+            b.parent = a;
+            a.rank++;
+        }
+    }
+
+    private Node getNode(JarClassEntry c, String key) {
+        Map<String, Node> declared = declarations.get(c);
+        return declared != null ? declared.get(key) : null;
+    }
+
+    /**
+     * @return The classes sharing the given method with c, or null if c wasn't indexed
+     */
+    List<JarClassEntry> getMatchingEntries(JarClassEntry c, String key) {
+        Node node = getNode(c, key);
+        return node != null ? node.family.getClasses() : null;
+    }
+
+    /**
+     * @return Whether no parent of c declares the given method, or null if c wasn't indexed
+     */
+    Boolean isSource(JarClassEntry c, String key) {
+        Node node = getNode(c, key);
+        return node != null ? !node.inherited : null;
+    }
+
+    List<Family> getFamilies() {
+        return Collections.unmodifiableList(families);
+    }
+}
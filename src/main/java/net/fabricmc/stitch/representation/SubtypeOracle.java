@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2016, 2017, 2018, 2019 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.stitch.representation;
+
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Answers subtype questions for any {@link ClassStorage}, including one which hands out
+ * {@link VirtualJarClassEntry}s for library classes.
+ *
+ * Each class the storage can resolve is given the set of all its ancestors as a bitset the first
+ * time it is asked about, after which checking whether it extends or implements a given type is a
+ * single bit test. Names the storage can't resolve still count as ancestors, but their own parents
+ * are unknown. Safe to share between threads.
+ */
+public class SubtypeOracle {
+    private final ClassStorage storage;
+    private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+    private final Map<String, BitSet> ancestors = new ConcurrentHashMap<>();
+    private final AtomicInteger nextID = new AtomicInteger();
+
+    public SubtypeOracle(ClassStorage storage) {
+        this.storage = storage;
+    }
+
+    private int idOf(String name) {
+        return ids.computeIfAbsent(name, k -> nextID.getAndIncrement());
+    }
+
+    private BitSet getAncestors(String name) {
+        BitSet out = ancestors.get(name);
+        if (out != null) return out;
+
+        JarClassEntry entry = storage.getClass(name, false);
+        if (entry == null) return null;
+
+        //Parents are numbered first so the bitset only ever needs to be as long as the class' own ID
+        out = new BitSet();
+        addAncestors(out, entry.getSuperClassName());
+
+        List<String> interfaces = entry.interfaces;
+        if (interfaces != null) {
+            for (String itf : interfaces) {
+                addAncestors(out, itf);
+            }
+        }
+
+        out.set(idOf(name));
+
+        BitSet existing = ancestors.putIfAbsent(name, out);
+        return existing != null ? existing : out;
+    }
+
+    private void addAncestors(BitSet set, String name) {
+        if (name == null) return;
+
+        BitSet parent = getAncestors(name);
+        if (parent != null) {
+            set.or(parent);
+        } else {
+            set.set(idOf(name));
+        }
+    }
+
+    /**
+     * Whether child is the same type as parent, or extends or implements it somewhere in its hierarchy
+     *
+     * @param parent The internal name of the potential parent type
+     * @param child The internal name of the potential child type
+     *
+     * @return Whether a child could be assigned to a parent, always false if child isn't known
+     */
+    public boolean isAssignableFrom(String parent, String child) {
+        if (parent.equals(child) || "java/lang/Object".equals(parent)) return true;
+
+        BitSet childAncestors = getAncestors(child);
+        if (childAncestors == null) return false;
+
+        Integer parentID = ids.get(parent);
+        return parentID != null && childAncestors.get(parentID);
+    }
+}
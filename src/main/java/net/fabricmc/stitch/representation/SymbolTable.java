@@ -0,0 +1,57 @@
+/*
+ * Copyright (c) 2016, 2017, 2018, 2019 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.stitch.representation;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Shares a single copy of every name, descriptor, signature and member key read into a jar.
+ *
+ * Each class read from a jar gets its own copies of the strings in it, which for descriptors
+ * like ()V or commonly referenced class names means thousands of duplicates.
+ */
+final class SymbolTable {
+    private final Map<String, String> symbols = new ConcurrentHashMap<>();
+
+    String intern(String symbol) {
+        if (symbol == null) {
+            return null;
+        }
+
+        String existing = symbols.get(symbol);
+        if (existing == null) {
+            existing = symbols.putIfAbsent(symbol, symbol);
+        }
+
+        return existing != null ? existing : symbol;
+    }
+
+    String[] intern(String[] symbols) {
+        if (symbols != null) {
+            for (int i = 0; i < symbols.length; i++) {
+                symbols[i] = intern(symbols[i]);
+            }
+        }
+
+        return symbols;
+    }
+
+    String memberKey(String name, String desc) {
+        return intern(name + desc);
+    }
+}
@@ -25,9 +25,33 @@ public final class VirtualJarClassEntry extends JarClassEntry {
 	}
 
 	public VirtualJarClassEntry(String fullyQualifiedName) throws IOException {
+		this(fullyQualifiedName, new ClassReader(fullyQualifiedName));
+	}
+
+	VirtualJarClassEntry(String fullyQualifiedName, byte[] classFile) {
+		this(fullyQualifiedName, new ClassReader(classFile));
+	}
+
+	/**
+	 * Only reads the class' place in the hierarchy, leaving its members until they are first asked for
+	 */
+	VirtualJarClassEntry(String fullyQualifiedName, MappedJar.Entry classFile, SymbolTable symbols) throws IOException {
+		super(splitName(fullyQualifiedName), fullyQualifiedName);
+
+		new ClassReader(classFile.read()).accept(new ClassVisitor(Opcodes.ASM7) {
+			@Override
+			public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
+				populate(access, symbols.intern(signature), symbols.intern(superName), symbols.intern(interfaces));
+			}
+		}, ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+
+		setLazyMembers(new LazyMembers(classFile, symbols));
+	}
+
+	private VirtualJarClassEntry(String fullyQualifiedName, ClassReader reader) {
 		super(splitName(fullyQualifiedName), fullyQualifiedName);
 
-		new ClassReader(fullyQualifiedName).accept(new ClassVisitor(Opcodes.ASM7) {
+		reader.accept(new ClassVisitor(Opcodes.ASM7) {
 			@Override
 			public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
 				populate(access, signature, superName, interfaces);
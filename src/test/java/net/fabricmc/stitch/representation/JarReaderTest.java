@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2016, 2017, 2018, 2019 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.stitch.representation;
+
+import net.fabricmc.stitch.util.Pair;
+import net.fabricmc.stitch.util.StitchUtil;
+import org.junit.Test;
+import org.objectweb.asm.ClassVisitor;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class JarReaderTest {
+    private static File getJar() throws URISyntaxException {
+        //ASM's visitors are extended all over the jar, so there are plenty of method families to join
+        return new File(ClassVisitor.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+    }
+
+    private static JarRootEntry read(File file, boolean parallelJoin) throws IOException {
+        JarRootEntry jar = new JarRootEntry(file);
+        JarReader.Builder.create(jar).joinMethodEntries(true).parallelJoin(parallelJoin).withSnapshotCache(null).build().apply();
+        return jar;
+    }
+
+    /**
+     * Describes every class' methods, along with which of them share an entry once joined
+     */
+    private static List<String> describe(JarRootEntry jar) {
+        List<JarClassEntry> classes = new ArrayList<>(jar.getAllClasses());
+        classes.sort(Comparator.comparing(JarClassEntry::getFullyQualifiedName));
+
+        List<String> out = new ArrayList<>();
+        Map<JarMethodEntry, Integer> entries = new IdentityHashMap<>();
+
+        for (JarClassEntry c : classes) {
+            out.add(c.getFullyQualifiedName());
+
+            List<JarMethodEntry> methods = new ArrayList<>(c.getMethods());
+            methods.sort(Comparator.comparing(JarMethodEntry::getKey));
+
+            for (JarMethodEntry m : methods) {
+                Integer entry = entries.computeIfAbsent(m, k -> entries.size());
+
+                List<String> related = new ArrayList<>();
+                for (Pair<JarClassEntry, String> pair : c.getRelatedMethods(m)) {
+                    related.add(pair.getLeft().getFullyQualifiedName() + '.' + pair.getRight());
+                }
+                Collections.sort(related);
+
+                out.add("  " + m.getKey() + ' ' + m.getAccess() + " #" + entry + ' ' + related);
+            }
+        }
+
+        return out;
+    }
+
+    @Test
+    public void parallelJoinMatchesSequential() throws Exception {
+        File file = getJar();
+        JarRootEntry sequential = read(file, false);
+        JarRootEntry parallel = read(file, true);
+
+        assertEquals(describe(sequential), describe(parallel));
+
+        //Make sure something was actually joined
+        int methods = 0;
+        Set<JarMethodEntry> entries = StitchUtil.newIdentityHashSet();
+        for (JarClassEntry c : sequential.getAllClasses()) {
+            methods += c.getMethods().size();
+            entries.addAll(c.getMethods());
+        }
+        assertTrue("No method entries were joined", entries.size() < methods);
+    }
+}